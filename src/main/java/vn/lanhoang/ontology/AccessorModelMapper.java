@@ -0,0 +1,117 @@
+package vn.lanhoang.ontology;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import vn.lanhoang.ontology.mapping.FieldAccessor;
+
+/**
+ * {@link IModelExecutor} calling getters and setters through accessors
+ * generated when the class is registered, with a converter resolved for each
+ * field. Fields whose accessors cannot be generated keep going through
+ * {@link ModelMapper}'s reflection.
+ */
+public class AccessorModelMapper extends ModelMapper {
+
+	private static final Logger log = LoggerFactory.getLogger(AccessorModelMapper.class);
+
+	private final Map<Field, FieldAccessor> accessors = new HashMap<>();
+	private final FieldAccessor nameAccessor;
+
+	public AccessorModelMapper(Class<?> type) {
+		super(type);
+
+		for (Map.Entry<Field, Method[]> entry : getFieldMaps().entrySet()) {
+			Field field = entry.getKey();
+			try {
+				accessors.put(field, FieldAccessor.of(entry.getValue()[0], entry.getValue()[1], field.getType()));
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				log.warn("Using reflection for field '{}' of {} - Message: {}", field.getName(), type.getName(), e.getMessage());
+			}
+		}
+		nameAccessor = accessors.get(getNameField());
+	}
+
+	@Override
+	public Object invokeGetter(Field field, Object obj) throws IllegalAccessException, InvocationTargetException {
+		FieldAccessor accessor = accessors.get(field);
+		if (accessor == null) {
+			return super.invokeGetter(field, obj);
+		}
+
+		try {
+			return accessor.get(obj);
+		} catch (RuntimeException e) {
+			throw new InvocationTargetException(unwrap(e));
+		}
+	}
+
+	@Override
+	public void invokeSetter(Field field, Object obj, Object val) throws InvocationTargetException, IllegalAccessException {
+		FieldAccessor accessor = accessors.get(field);
+		if (accessor == null) {
+			super.invokeSetter(field, obj, val);
+			return;
+		}
+
+		try {
+			accessor.convertAndSet(obj, val);
+		} catch (NumberFormatException | ClassCastException e) {
+			log.error("Error while casting to {} from {} - Message: {}", field.getType().getName(), val.getClass().getName(), e.getMessage());
+		} catch (RuntimeException e) {
+			throw new InvocationTargetException(unwrap(e));
+		}
+	}
+
+	@Override
+	public void invokeRawSetter(Field field, Object obj, Object val) throws InvocationTargetException, IllegalAccessException {
+		FieldAccessor accessor = accessors.get(field);
+		if (accessor == null) {
+			super.invokeRawSetter(field, obj, val);
+			return;
+		}
+
+		try {
+			accessor.set(obj, val);
+		} catch (RuntimeException e) {
+			throw new InvocationTargetException(unwrap(e));
+		}
+	}
+
+	@Override
+	public void invokeSetName(Object obj, Object val) throws InvocationTargetException, IllegalAccessException {
+		if (nameAccessor == null) {
+			super.invokeSetName(obj, val);
+			return;
+		}
+
+		try {
+			nameAccessor.set(obj, val.toString());
+		} catch (RuntimeException e) {
+			throw new InvocationTargetException(unwrap(e));
+		}
+	}
+
+	@Override
+	public Object invokeGetName(Object obj) throws InvocationTargetException, IllegalAccessException {
+		if (nameAccessor == null) {
+			return super.invokeGetName(obj);
+		}
+
+		try {
+			return nameAccessor.get(obj);
+		} catch (RuntimeException e) {
+			throw new InvocationTargetException(unwrap(e));
+		}
+	}
+
+	private static Throwable unwrap(RuntimeException e) {
+		return e instanceof FieldAccessor.AccessorException ? e.getCause() : e;
+	}
+}
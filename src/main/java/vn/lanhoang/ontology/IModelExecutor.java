@@ -6,6 +6,10 @@ import java.lang.reflect.InvocationTargetException;
 public interface IModelExecutor {
 	Object invokeGetter(Field field, Object obj) throws IllegalAccessException, InvocationTargetException;
 	void invokeSetter(Field field, Object obj, Object val) throws InvocationTargetException, IllegalAccessException;
+	/**
+	 * Set a value that already has the field's type, without converting it from a model value
+	 */
+	void invokeRawSetter(Field field, Object obj, Object val) throws InvocationTargetException, IllegalAccessException;
 	void invokeSetName(Object obj, Object val) throws InvocationTargetException, IllegalAccessException;
 	Object invokeGetName(Object obj) throws InvocationTargetException, IllegalAccessException;
 	Field getNameField();
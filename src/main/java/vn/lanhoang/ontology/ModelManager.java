@@ -2,42 +2,98 @@ package vn.lanhoang.ontology;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import vn.lanhoang.ontology.annotation.OntologyObject;
+import vn.lanhoang.ontology.mapping.MappingPlan;
+
+/**
+ * Registry of the executors and mapping plans of ontology classes.
+ * 
+ * <p>Lookups never lock. Registration may race while Spring creates beans in
+ * parallel, but each class is still registered exactly once.</p>
+ */
 public class ModelManager {
 	
-	private static ModelManager INSTANCE;
-	private Map<Class<?>, IModelExecutor> executors;
-	private Set<Class<?>> supportClasses;
+	private final ConcurrentMap<Class<?>, IModelExecutor> executors;
+	private final ConcurrentMap<Class<?>, MappingPlan> plans;
+	private final Set<Class<?>> supportClasses;
 	
 	private ModelManager() {
-		executors = new HashMap<>();
-		supportClasses = new HashSet<>(
+		executors = new ConcurrentHashMap<>();
+		plans = new ConcurrentHashMap<>();
+		supportClasses = Collections.unmodifiableSet(new HashSet<>(
 		Arrays.asList(
 			Integer.class, Short.class, Byte.class,
 			Long.class, Float.class, Double.class,
 			Boolean.class, String.class
-		));
+		)));
+	}
+	
+	private static class Holder {
+		private static final ModelManager INSTANCE = new ModelManager();
 	}
 
 	public static ModelManager instance() {
-		if (INSTANCE == null) {
-			INSTANCE = new ModelManager();
-		}
-		
-		return INSTANCE;
+		return Holder.INSTANCE;
 	}
 
 	public Map<Class<?>, IModelExecutor> getExecutors() {
-		return executors;
+		return Collections.unmodifiableMap(executors);
 	}
 	
+	/**
+	 * Executor of a class, ontology classes that were not registered yet are
+	 * registered on the way
+	 * 
+	 * @param type Class
+	 * @return Executor, null for classes that are not ontology classes
+	 */
 	public IModelExecutor getExecutor(Class<?> type) {
-		return executors.get(type);
+		IModelExecutor executor = executors.get(type);
+		if (executor == null && type.isAnnotationPresent(OntologyObject.class)) {
+			executor = register(type);
+		}
+		
+		return executor;
+	}
+	
+	/**
+	 * Create the executor of an ontology class unless it is already registered
+	 * 
+	 * @param type Ontology class
+	 * @return Registered executor
+	 */
+	public IModelExecutor register(Class<?> type) {
+		IModelExecutor executor = executors.get(type);
+		if (executor == null) {
+			executor = executors.computeIfAbsent(type, AccessorModelMapper::new);
+		}
+		
+		return executor;
+	}
+	
+	/**
+	 * Mapping plan of an ontology class, built on first use
+	 * 
+	 * @param type Ontology class
+	 * @param baseUri Base uri the properties are resolved against
+	 * @return MappingPlan
+	 */
+	public MappingPlan getPlan(Class<?> type, String baseUri) {
+		MappingPlan plan = plans.get(type);
+		if (plan == null || !plan.getBaseUri().equals(baseUri)) {
+			plan = plans.compute(type, (key, current) ->
+				current != null && current.getBaseUri().equals(baseUri) ? current : MappingPlan.of(key, baseUri));
+		}
+		
+		return plan;
 	}
 	
 	public boolean isSupported(Class<?> type) {
@@ -32,10 +32,6 @@ public class ModelMapper implements IModelExecutor {
 
 	public ModelMapper(Class<?> type) {
 		this.type = type;
-		ModelManager modelManager = ModelManager.instance();
-		if (modelManager.getExecutors().containsKey(type)) {
-			return;
-		}
 		final AtomicBoolean checked = new AtomicBoolean(false);
 		Method[] methods = ReflectionUtils.getAllDeclaredMethods(type);
 
@@ -86,8 +82,6 @@ public class ModelMapper implements IModelExecutor {
 				}
 			}
 		});
-		
-		modelManager.getExecutors().put(type, this);
 	}
 
 	@Override
@@ -124,6 +118,13 @@ public class ModelMapper implements IModelExecutor {
 		}
 	}
 
+	@Override
+	public void invokeRawSetter(Field field, Object obj, Object val) throws InvocationTargetException, IllegalAccessException {
+		if (fieldMaps.containsKey(field)) {
+			fieldMaps.get(field)[1].invoke(obj, val);
+		}
+	}
+
 	@Override
 	public void invokeSetName(Object obj, Object val) throws InvocationTargetException, IllegalAccessException {
 		setName.invoke(obj, nameField.getType().cast(val.toString()));
@@ -142,6 +143,14 @@ public class ModelMapper implements IModelExecutor {
 		return this.nameField;
 	}
 
+	protected Map<Field, Method[]> getFieldMaps() {
+		return fieldMaps;
+	}
+
+	protected Class<?> getType() {
+		return type;
+	}
+
 	private void validateAnnotations() {
 		AtomicBoolean hasName = new AtomicBoolean(false);
 		ReflectionUtils.doWithFields(type, field -> {
@@ -0,0 +1,22 @@
+package vn.lanhoang.ontology.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fetch strategy of a reference or list field, used unless the query asks
+ * for its own
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Fetch {
+	public FetchType value() default FetchType.EAGER;
+
+	/**
+	 * Levels of references read with an {@link FetchType#EAGER} field, the
+	 * field itself being the first one
+	 */
+	public int depth() default 1;
+}
@@ -0,0 +1,19 @@
+package vn.lanhoang.ontology.annotation;
+
+/**
+ * How a referenced object is read with its parent
+ */
+public enum FetchType {
+	/**
+	 * Only the uri of the referenced object is set
+	 */
+	ID,
+	/**
+	 * The referenced object is read with its parent, down to a depth
+	 */
+	EAGER,
+	/**
+	 * The referenced object is read on first access
+	 */
+	LAZY
+}
@@ -0,0 +1,374 @@
+package vn.lanhoang.ontology.cache;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import vn.lanhoang.ontology.IModelExecutor;
+import vn.lanhoang.ontology.ModelManager;
+import vn.lanhoang.ontology.mapping.FetchStrategy;
+import vn.lanhoang.ontology.mapping.MappingPlan;
+import vn.lanhoang.ontology.mapping.MappingPlan.PropertyMapping;
+import vn.lanhoang.ontology.storage.ChangeSet;
+import vn.lanhoang.ontology.storage.ModelStoreListener;
+
+/**
+ * Second level cache of read entities, shared by the repositories of one
+ * model store and keyed by class, uri and fetch strategy.
+ *
+ * <p>Each entry remembers the resources whose statements it was read from, a
+ * write changing any of them evicts it. Entries also leave the cache after
+ * {@code ttl}, and least recently used first once the cache is full.</p>
+ *
+ * <p>Entities are copied into and out of the cache, callers may modify what
+ * they get.</p>
+ */
+public class EntityCache implements ModelStoreListener {
+
+	private static final Logger log = LoggerFactory.getLogger(EntityCache.class);
+	public static final long DEFAULT_TTL = 600L;
+
+	private final ModelManager modelManager = ModelManager.instance();
+	private final int maxSize;
+	private final long ttlNanos;
+	private final String baseUri;
+	private final Map<Key, Cached> entries;
+	private final Map<String, Set<Key>> dependents = new HashMap<>();
+	private long generation;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder loadNanos = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	/**
+	 * @param maxSize Number of entities kept
+	 * @param ttl Seconds an entity is kept, 0 to keep it until it is evicted
+	 * @param baseUri Base uri of the entities' properties
+	 */
+	public EntityCache(int maxSize, long ttl, String baseUri) {
+		this.maxSize = maxSize;
+		this.ttlNanos = TimeUnit.SECONDS.toNanos(ttl);
+		this.baseUri = baseUri;
+		this.entries = new LinkedHashMap<Key, Cached>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+				if (size() <= EntityCache.this.maxSize) {
+					return false;
+				}
+
+				unindex(eldest.getKey(), eldest.getValue());
+				evictions.increment();
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Copy of a cached entity
+	 *
+	 * @param type Class of the entity
+	 * @param uri Uri of the entity
+	 * @param strategy Fetch strategy it was read with, null for the fields' own
+	 * @return Copy, null when the entity has to be read
+	 */
+	public <T> T get(Class<T> type, String uri, FetchStrategy strategy) {
+		Key key = new Key(type, uri, strategy);
+		Object entity = null;
+		synchronized (entries) {
+			Cached entry = entries.get(key);
+			if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.created > ttlNanos) {
+				entries.remove(key);
+				unindex(key, entry);
+				evictions.increment();
+			} else if (entry != null) {
+				entity = entry.entity;
+			}
+		}
+		if (entity == null) {
+			misses.increment();
+			return null;
+		}
+
+		hits.increment();
+		return type.cast(copy(entity));
+	}
+
+	/**
+	 * @return Number to read before reading an entity and give back to
+	 *         {@link #put}, so that an entity read before a write is not kept
+	 */
+	public long getGeneration() {
+		synchronized (entries) {
+			return generation;
+		}
+	}
+
+	/**
+	 * Keep a copy of an entity that was just read
+	 *
+	 * @param type Class of the entity
+	 * @param uri Uri of the entity
+	 * @param strategy Fetch strategy it was read with, null for the fields' own
+	 * @param entity Entity read, without lazy references
+	 * @param dependencies Resources whose statements the entity was read from
+	 * @param generation {@link #getGeneration()} before the entity was read
+	 * @param nanos Time it took to read the entity
+	 */
+	public void put(Class<?> type, String uri, FetchStrategy strategy, Object entity, Collection<Node> dependencies, long generation, long nanos) {
+		loads.increment();
+		loadNanos.add(nanos);
+		Object copy = copy(entity);
+		if (copy == null) {
+			return;
+		}
+
+		Key key = new Key(type, uri, strategy);
+		synchronized (entries) {
+			if (generation != this.generation) {
+				// A write ran while the entity was read
+				return;
+			}
+
+			Cached entry = new Cached(copy, dependencies);
+			Cached previous = entries.put(key, entry);
+			if (previous != null) {
+				unindex(key, previous);
+			}
+			index(key, entry);
+		}
+	}
+
+	@Override
+	public void written(ChangeSet changes) {
+		Set<String> uris = new HashSet<>();
+		for (Triple triple : changes.getAdded()) {
+			uris.add(uri(triple.getSubject()));
+		}
+		for (Triple triple : changes.getRemoved()) {
+			uris.add(uri(triple.getSubject()));
+		}
+
+		synchronized (entries) {
+			generation++;
+			for (String uri : uris) {
+				Set<Key> keys = dependents.get(uri);
+				if (keys == null) {
+					continue;
+				}
+
+				for (Key key : new ArrayList<>(keys)) {
+					Cached entry = entries.remove(key);
+					if (entry != null) {
+						unindex(key, entry);
+						invalidations.increment();
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public void replaced() {
+		clear();
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			generation++;
+			entries.clear();
+			dependents.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public double getHitRatio() {
+		long total = getHits() + getMisses();
+		return total == 0 ? 0 : (double) getHits() / total;
+	}
+
+	/**
+	 * @return Average time spent reading an entity on a miss
+	 */
+	public long getAverageLoadNanos() {
+		long count = loads.sum();
+		return count == 0 ? 0 : loadNanos.sum() / count;
+	}
+
+	/**
+	 * @return Entries dropped because the cache was full or they expired
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return Entries dropped because a write changed what they were read from
+	 */
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	private void index(Key key, Cached entry) {
+		for (String dependency : entry.dependencies) {
+			dependents.computeIfAbsent(dependency, k -> new HashSet<>()).add(key);
+		}
+	}
+
+	private void unindex(Key key, Cached entry) {
+		for (String dependency : entry.dependencies) {
+			Set<Key> keys = dependents.get(dependency);
+			if (keys != null && keys.remove(key) && keys.isEmpty()) {
+				dependents.remove(dependency);
+			}
+		}
+	}
+
+	/**
+	 * Deep copy of an entity through its mapped fields
+	 */
+	private Object copy(Object entity) {
+		try {
+			return copy(entity, new IdentityHashMap<>());
+		} catch (ReflectiveOperationException e) {
+			log.error("Cannot copy {} - Message: {}", entity.getClass().getName(), e.getMessage());
+			return null;
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Object copy(Object source, Map<Object, Object> copies) throws ReflectiveOperationException {
+		Object target = copies.get(source);
+		if (target != null) {
+			return target;
+		}
+
+		Class<?> type = source.getClass();
+		IModelExecutor executor = modelManager.getExecutor(type);
+		MappingPlan plan = modelManager.getPlan(type, baseUri);
+		target = type.getDeclaredConstructor().newInstance();
+		copies.put(source, target);
+
+		Object name = executor.invokeGetName(source);
+		if (name != null) {
+			executor.invokeSetName(target, name);
+		}
+		for (PropertyMapping mapping : plan.getMappings()) {
+			Object value = executor.invokeGetter(mapping.getField(), source);
+			if (value == null) {
+				continue;
+			}
+
+			switch (mapping.getKind()) {
+				case SCALAR:
+					// Supported scalar types are immutable, and already converted
+					set(executor, mapping, target, value);
+					break;
+				case REFERENCE:
+					set(executor, mapping, target, copy(value, copies));
+					break;
+				case LIST:
+					List elements = new ArrayList<>(((List) value).size());
+					for (Object element : (List) value) {
+						elements.add(element == null ? null : copy(element, copies));
+					}
+					set(executor, mapping, target, elements);
+					break;
+				default:
+					break;
+			}
+		}
+
+		return target;
+	}
+
+	private static void set(IModelExecutor executor, PropertyMapping mapping, Object target, Object value) throws IllegalAccessException, InvocationTargetException {
+		executor.invokeRawSetter(mapping.getField(), target, value);
+	}
+
+	private static String uri(Node node) {
+		return node.isURI() ? node.getURI() : node.toString();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("EntityCache [size=%d/%d, hits=%d, misses=%d, evictions=%d, invalidations=%d, load=%d us]",
+				size(), maxSize, getHits(), getMisses(), getEvictions(), getInvalidations(), getAverageLoadNanos() / 1000);
+	}
+
+	private static final class Key {
+		private final Class<?> type;
+		private final String uri;
+		private final String strategy;
+
+		Key(Class<?> type, String uri, FetchStrategy strategy) {
+			this.type = type;
+			this.uri = uri;
+			this.strategy = strategy == null ? "" : strategy.toString();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+			return type == other.type && uri.equals(other.uri) && strategy.equals(other.strategy);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, uri, strategy);
+		}
+	}
+
+	private static final class Cached {
+		private final Object entity;
+		private final long created = System.nanoTime();
+		private final Set<String> dependencies;
+
+		Cached(Object entity, Collection<Node> dependencies) {
+			this.entity = entity;
+			this.dependencies = new HashSet<>();
+			for (Node node : dependencies) {
+				this.dependencies.add(uri(node));
+			}
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package vn.lanhoang.ontology.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import vn.lanhoang.ontology.storage.ChangeSet;
+
+/**
+ * First level cache of one unit of work: within it, every read returns the
+ * same instance for the same class and uri.
+ *
+ * <p>The unit of work is bound to the thread that opened it and ends when
+ * the outermost {@link #open()} is closed:</p>
+ *
+ * <pre>
+ * try (IdentityMap identityMap = IdentityMap.open()) {
+ *     List&lt;Subject&gt; subjects = subjectRepository.find();
+ *     Optional&lt;Subject&gt; same = subjectRepository.findByUriTag("s1");
+ * }
+ * </pre>
+ *
+ * <p>Instances are not refreshed by writes of other threads while the unit
+ * of work lasts. Saving or removing an entity evicts every instance read
+ * from statements that changed, including the instances referencing it, the
+ * next read builds a new one.</p>
+ */
+public final class IdentityMap implements AutoCloseable {
+
+	private static final Logger log = LoggerFactory.getLogger(IdentityMap.class);
+	private static final ThreadLocal<IdentityMap> CURRENT = new ThreadLocal<>();
+
+	private final Map<Key, Entry> entries = new HashMap<>();
+	private int depth = 1;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long builds;
+	private long hydrationNanos;
+
+	private IdentityMap() {
+	}
+
+	/**
+	 * Open a unit of work on the current thread, or join the one already open
+	 *
+	 * @return IdentityMap to close once the unit of work is done
+	 */
+	public static IdentityMap open() {
+		IdentityMap current = CURRENT.get();
+		if (current != null) {
+			current.depth++;
+			return current;
+		}
+
+		current = new IdentityMap();
+		CURRENT.set(current);
+		return current;
+	}
+
+	/**
+	 * @return Unit of work open on the current thread, null when there is none
+	 */
+	public static IdentityMap current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Instance read for a class and uri, if it was read at least as deep
+	 *
+	 * @param type Class of the instance
+	 * @param uri Uri of the instance
+	 * @param strength How much of the instance's references must be read, see {@link #put}
+	 * @return Instance, null when it has to be read again
+	 */
+	public Object get(Class<?> type, String uri, int strength) {
+		Entry entry = entries.get(new Key(type, uri));
+		if (entry == null || entry.strength < strength) {
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return entry.instance;
+	}
+
+	/**
+	 * Instance read for a class and uri, however deep, without counting a lookup
+	 *
+	 * <p>Reading an instance deeper fills this instance again so that it keeps
+	 * its identity.</p>
+	 *
+	 * @param type Class of the instance
+	 * @param uri Uri of the instance
+	 * @return Instance, null when there is none
+	 */
+	public Object peek(Class<?> type, String uri) {
+		Entry entry = entries.get(new Key(type, uri));
+		return entry == null ? null : entry.instance;
+	}
+
+	/**
+	 * Resources the instance read for a class and uri was read from
+	 *
+	 * @param type Class of the instance
+	 * @param uri Uri of the instance
+	 * @return Resources, empty when there is no instance
+	 */
+	public Set<Node> getDependencies(Class<?> type, String uri) {
+		Entry entry = entries.get(new Key(type, uri));
+		return entry == null ? Collections.emptySet() : Collections.unmodifiableSet(entry.dependencies);
+	}
+
+	/**
+	 * Keep the instance read for a class and uri
+	 *
+	 * @param type Class of the instance
+	 * @param uri Uri of the instance
+	 * @param instance Instance
+	 * @param strength How much of its references were read, higher reads more
+	 * @param dependencies Resources whose statements the instance and the instances it references were read from
+	 * @param nanos Time it took to read the instance
+	 */
+	public void put(Class<?> type, String uri, Object instance, int strength, Collection<Node> dependencies, long nanos) {
+		entries.put(new Key(type, uri), new Entry(instance, strength, dependencies));
+		builds++;
+		hydrationNanos += nanos;
+	}
+
+	/**
+	 * Drop the instances of a uri, whatever their class, and the ones read from it
+	 *
+	 * @param uri Uri whose statements changed
+	 */
+	public void evict(String uri) {
+		evictAll(Collections.singleton(uri));
+	}
+
+	/**
+	 * Drop the instances read from every subject a write changed
+	 *
+	 * @param changes Triples added and removed by the write
+	 */
+	public void evict(ChangeSet changes) {
+		Set<String> uris = new HashSet<>();
+		for (Triple triple : changes.getAdded()) {
+			uris.add(uri(triple.getSubject()));
+		}
+		for (Triple triple : changes.getRemoved()) {
+			uris.add(uri(triple.getSubject()));
+		}
+		evictAll(uris);
+	}
+
+	private void evictAll(Set<String> uris) {
+		int size = entries.size();
+		if (!uris.isEmpty() && entries.entrySet().removeIf(entry ->
+				uris.contains(entry.getKey().uri) || entry.getValue().dependsOn(uris))) {
+			evictions += size - entries.size();
+		}
+	}
+
+	private static String uri(Node node) {
+		return node.isURI() ? node.getURI() : node.toString();
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Reads answered with an instance already built, as many allocations saved
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return Instances built and kept
+	 */
+	public long getBuilds() {
+		return builds;
+	}
+
+	/**
+	 * @return Average time spent building an instance
+	 */
+	public long getAverageHydrationNanos() {
+		return builds == 0 ? 0 : hydrationNanos / builds;
+	}
+
+	/**
+	 * @return Time saved by the hits, estimated from the average build time
+	 */
+	public long getEstimatedNanosSaved() {
+		return hits * getAverageHydrationNanos();
+	}
+
+	/**
+	 * End the unit of work once the outermost {@link #open()} is closed
+	 */
+	@Override
+	public void close() {
+		if (--depth > 0) {
+			return;
+		}
+
+		if (CURRENT.get() == this) {
+			CURRENT.remove();
+		}
+		log.debug("{}", this);
+		entries.clear();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("IdentityMap [size=%d, hits=%d, misses=%d, builds=%d, evictions=%d, saved=%d us]",
+				size(), hits, misses, builds, evictions, getEstimatedNanosSaved() / 1000);
+	}
+
+	private static final class Key {
+		private final Class<?> type;
+		private final String uri;
+
+		Key(Class<?> type, String uri) {
+			this.type = type;
+			this.uri = uri;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+			return type == other.type && uri.equals(other.uri);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, uri);
+		}
+	}
+
+	private static final class Entry {
+		private final Object instance;
+		private final int strength;
+		private final Set<Node> dependencies;
+
+		Entry(Object instance, int strength, Collection<Node> dependencies) {
+			this.instance = instance;
+			this.strength = strength;
+			this.dependencies = new HashSet<>(dependencies);
+		}
+
+		boolean dependsOn(Set<String> uris) {
+			for (Node dependency : dependencies) {
+				if (uris.contains(uri(dependency))) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package vn.lanhoang.ontology.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+
+/**
+ * Least recently used cache of parsed queries, keyed by query string.
+ *
+ * <p>Cached queries are shared and must not be modified, clone them with
+ * {@link Query#cloneQuery()} first.</p>
+ */
+public class QueryPlanCache {
+
+	public static final int DEFAULT_SIZE = 256;
+
+	private final int maxSize;
+	private final Map<String, Query> queries;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	public QueryPlanCache() {
+		this(DEFAULT_SIZE);
+	}
+
+	public QueryPlanCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.queries = new LinkedHashMap<String, Query>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+				return size() > QueryPlanCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Parsed query of a query string, parsed on the first call only
+	 *
+	 * @param queryStr Query string
+	 * @return Query
+	 */
+	public Query get(String queryStr) {
+		Query query;
+		synchronized (queries) {
+			query = queries.get(queryStr);
+		}
+		if (query != null) {
+			hits.increment();
+			return query;
+		}
+
+		misses.increment();
+		query = QueryFactory.create(queryStr);
+		// Resolved once here so that executions never write to the shared query
+		query.setResultVars();
+		synchronized (queries) {
+			queries.put(queryStr, query);
+		}
+
+		return query;
+	}
+
+	public void clear() {
+		synchronized (queries) {
+			queries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (queries) {
+			return queries.size();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public double getHitRatio() {
+		long total = getHits() + getMisses();
+		return total == 0 ? 0 : (double) getHits() / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("QueryPlanCache [size=%d/%d, hits=%d, misses=%d]", size(), maxSize, getHits(), getMisses());
+	}
+}
@@ -0,0 +1,211 @@
+package vn.lanhoang.ontology.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Least recently used cache of query results, keyed by normalized query.
+ *
+ * <p>Results are kept as subject uris, not entities. An entry only answers
+ * the model version it was computed on, see
+ * {@link vn.lanhoang.ontology.storage.ModelStore#getVersion()}, so any write
+ * makes every entry stale.</p>
+ *
+ * <p>The cache is bounded by the number of uris it holds, a result larger
+ * than the bound is not kept.</p>
+ */
+public class QueryResultCache {
+
+	public static final int DEFAULT_SIZE = 100000;
+
+	private final int maxUris;
+	private final Map<String, Entry> entries;
+	private int uris;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxUris Number of subject uris kept over all results
+	 */
+	public QueryResultCache(int maxUris) {
+		this.maxUris = maxUris;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Subjects a query returned on a model version
+	 *
+	 * @param query Normalized query
+	 * @param version Current model version
+	 * @return Subject uris, null when the query has to run
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> getSubjects(String query, long version) {
+		return (List<String>) get(query, version);
+	}
+
+	/**
+	 * @param query Normalized query
+	 * @param version Model version read before running the query
+	 * @param subjects Subject uris returned
+	 */
+	public void putSubjects(String query, long version, List<String> subjects) {
+		put(query, version, Collections.unmodifiableList(subjects), subjects.size());
+	}
+
+	/**
+	 * Subjects of each group a grouping returned on a model version
+	 *
+	 * @param query Normalized grouping
+	 * @param version Current model version
+	 * @return Subject uris by group, null when the grouping has to run
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, List<String>> getGroups(String query, long version) {
+		return (Map<String, List<String>>) get(query, version);
+	}
+
+	/**
+	 * @param query Normalized grouping
+	 * @param version Model version read before running the grouping
+	 * @param groups Subject uris by group
+	 * @return Unmodifiable copy of the groups, the one that is kept
+	 */
+	public Map<String, List<String>> putGroups(String query, long version, Map<String, List<String>> groups) {
+		Map<String, List<String>> copy = immutableGroups(groups);
+		int size = 0;
+		for (List<String> subjects : copy.values()) {
+			size += subjects.size();
+		}
+		put(query, version, copy, size);
+		return copy;
+	}
+
+	/**
+	 * Unmodifiable copy of groups and of their subject lists, in the same order
+	 *
+	 * @param groups Subject uris by group
+	 * @return Copy safe to share between callers
+	 */
+	public static Map<String, List<String>> immutableGroups(Map<String, List<String>> groups) {
+		Map<String, List<String>> copy = new LinkedHashMap<>(groups.size() * 4 / 3 + 1);
+		for (Map.Entry<String, List<String>> entry : groups.entrySet()) {
+			copy.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+		}
+		return Collections.unmodifiableMap(copy);
+	}
+
+	private Object get(String query, long version) {
+		Object value = null;
+		synchronized (entries) {
+			Entry entry = entries.get(query);
+			if (entry != null && entry.version == version) {
+				value = entry.value;
+			} else if (entry != null && entry.version < version) {
+				remove(query);
+			}
+		}
+		if (value == null) {
+			misses.increment();
+			return null;
+		}
+
+		hits.increment();
+		return value;
+	}
+
+	private void put(String query, long version, Object value, int size) {
+		if (size > maxUris) {
+			return;
+		}
+
+		synchronized (entries) {
+			Entry previous = entries.get(query);
+			if (previous != null && previous.version > version) {
+				// A newer result was put in the meantime
+				return;
+			}
+
+			remove(query);
+			entries.put(query, new Entry(version, value, size));
+			uris += size;
+			while (uris > maxUris) {
+				remove(entries.keySet().iterator().next());
+				evictions.increment();
+			}
+		}
+	}
+
+	private void remove(String query) {
+		Entry entry = entries.remove(query);
+		if (entry != null) {
+			uris -= entry.size;
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+			uris = 0;
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/**
+	 * @return Number of subject uris held
+	 */
+	public int getUris() {
+		synchronized (entries) {
+			return uris;
+		}
+	}
+
+	public int getMaxUris() {
+		return maxUris;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	public double getHitRatio() {
+		long total = getHits() + getMisses();
+		return total == 0 ? 0 : (double) getHits() / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("QueryResultCache [size=%d, uris=%d/%d, hits=%d, misses=%d, evictions=%d]",
+				size(), getUris(), maxUris, getHits(), getMisses(), getEvictions());
+	}
+
+	private static final class Entry {
+		private final long version;
+		private final Object value;
+		private final int size;
+
+		Entry(long version, Object value, int size) {
+			this.version = version;
+			this.value = value;
+			this.size = size;
+		}
+	}
+}
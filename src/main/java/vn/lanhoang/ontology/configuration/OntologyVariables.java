@@ -1,7 +1,17 @@
 package vn.lanhoang.ontology.configuration;
 
+import java.util.concurrent.ExecutorService;
+
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.util.FileManager;
+
+import vn.lanhoang.ontology.cache.EntityCache;
+import vn.lanhoang.ontology.cache.QueryPlanCache;
+import vn.lanhoang.ontology.storage.ModelHolder;
+import vn.lanhoang.ontology.storage.ModelStore;
+import vn.lanhoang.ontology.storage.SnapshotFormat;
+import vn.lanhoang.ontology.storage.StorageMode;
+import vn.lanhoang.ontology.storage.TdbModelStore;
+import vn.lanhoang.ontology.utils.AsyncExecutors;
 
 public class OntologyVariables {
 	
@@ -10,6 +20,23 @@ public class OntologyVariables {
 	private Integer maxNestedCount;
 	private String preffix;
 	private String preffixes;
+	private Long checkpointInterval = ModelHolder.DEFAULT_CHECKPOINT_INTERVAL;
+	private Long checkpointSize = ModelHolder.DEFAULT_CHECKPOINT_SIZE;
+	private SnapshotFormat snapshotFormat = SnapshotFormat.NONE;
+	private Boolean rdfXmlExport = true;
+	private Integer queryCacheSize = QueryPlanCache.DEFAULT_SIZE;
+	private Integer queryResultCacheSize = 0;
+	private Boolean batchHydration = true;
+	private Integer entityCacheSize = 0;
+	private Long entityCacheTtl = EntityCache.DEFAULT_TTL;
+	private StorageMode storageMode = StorageMode.FILE;
+	private String tdbLocation;
+	private Integer asyncThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+	private Integer asyncQueueSize = 1000;
+	private volatile ExecutorService asyncExecutor;
+	private boolean ownsAsyncExecutor;
+	private volatile ModelStore modelStore;
+	private volatile EntityCache entityCache;
 	
 	public OntologyVariables() {
 	}
@@ -22,8 +49,143 @@ public class OntologyVariables {
 		this.baseUri = baseUri;
 	}
 	
+	/**
+	 * Shared model, loaded once from the storage
+	 * 
+	 * @return Model
+	 */
 	public Model getModel() {
-		return FileManager.getInternal().loadModelInternal(path);
+		return getModelStore().getModel();
+	}
+	
+	/**
+	 * Read only view over the shared model
+	 * 
+	 * @return Model
+	 */
+	public Model getReadModel() {
+		return getModelStore().getReadModel();
+	}
+	
+	/**
+	 * Use an already loaded model instead of the storage's content
+	 * 
+	 * @param model Loaded model
+	 */
+	public void setModel(Model model) {
+		getModelStore().setModel(model);
+	}
+	
+	/**
+	 * Storage of the shared model, created on first use from {@link #getStorageMode()}
+	 * 
+	 * @return ModelStore
+	 */
+	public ModelStore getModelStore() {
+		ModelStore store = modelStore;
+		if (store == null) {
+			synchronized (this) {
+				if (modelStore == null) {
+					modelStore = createModelStore();
+				}
+				store = modelStore;
+			}
+		}
+		
+		return store;
+	}
+	
+	/**
+	 * Storage settings are read once, when the store is created
+	 */
+	private void checkStoreNotCreated(String setting) {
+		if (modelStore != null) {
+			throw new IllegalStateException(setting + " must be set before the model store is first used");
+		}
+	}
+	
+	private ModelStore createModelStore() {
+		if (storageMode == StorageMode.TDB2) {
+			if (tdbLocation == null) {
+				throw new IllegalStateException("tdbLocation is required by storage mode TDB2");
+			}
+			
+			return new TdbModelStore(tdbLocation, path);
+		}
+		
+		return new ModelHolder(path, checkpointInterval, checkpointSize, snapshotFormat, rdfXmlExport);
+	}
+	
+	/**
+	 * Entities cache shared by the repositories, created on first use and
+	 * evicted by the storage's writes
+	 * 
+	 * @return EntityCache, null when {@link #getEntityCacheSize()} is not positive
+	 */
+	public EntityCache getEntityCache() {
+		if (entityCacheSize == null || entityCacheSize <= 0) {
+			return null;
+		}
+		
+		EntityCache cache = entityCache;
+		if (cache == null) {
+			synchronized (this) {
+				if (entityCache == null) {
+					EntityCache created = new EntityCache(entityCacheSize, entityCacheTtl == null ? 0 : entityCacheTtl, baseUri);
+					getModelStore().addListener(created);
+					entityCache = created;
+				}
+				cache = entityCache;
+			}
+		}
+		
+		return cache;
+	}
+	
+	/**
+	 * Executor of the repositories' asynchronous methods, created on first use
+	 * from {@link #getAsyncThreads()} and {@link #getAsyncQueueSize()}
+	 * 
+	 * @return ExecutorService
+	 */
+	public ExecutorService getAsyncExecutor() {
+		ExecutorService executor = asyncExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				if (asyncExecutor == null) {
+					asyncExecutor = AsyncExecutors.bounded(asyncThreads, asyncQueueSize);
+					ownsAsyncExecutor = true;
+				}
+				executor = asyncExecutor;
+			}
+		}
+		
+		return executor;
+	}
+	
+	/**
+	 * Run the asynchronous methods on an executor managed by the application
+	 * 
+	 * @param asyncExecutor Executor, not shut down by {@link #close()}
+	 */
+	public synchronized void setAsyncExecutor(ExecutorService asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+		this.ownsAsyncExecutor = false;
+	}
+	
+	/**
+	 * Write pending changes and release the storage, called by Spring on shutdown
+	 */
+	public void close() {
+		synchronized (this) {
+			if (asyncExecutor != null && ownsAsyncExecutor) {
+				asyncExecutor.shutdown();
+				asyncExecutor = null;
+			}
+		}
+		if (modelStore != null) {
+			modelStore.close();
+		}
 	}
 
 	public Integer getMaxNestedCount() {
@@ -39,6 +201,7 @@ public class OntologyVariables {
 	}
 
 	public void setPath(String path) {
+		checkStoreNotCreated("path");
 		this.path = path;
 	}
 
@@ -58,4 +221,153 @@ public class OntologyVariables {
 		this.preffixes = preffixes;
 	}
 	
+	public Long getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	/**
+	 * @param checkpointInterval Seconds between two writes of the journal into the file
+	 */
+	public void setCheckpointInterval(Long checkpointInterval) {
+		checkStoreNotCreated("checkpointInterval");
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	public Long getCheckpointSize() {
+		return checkpointSize;
+	}
+
+	/**
+	 * @param checkpointSize Journal size in bytes that triggers a write into the file
+	 */
+	public void setCheckpointSize(Long checkpointSize) {
+		checkStoreNotCreated("checkpointSize");
+		this.checkpointSize = checkpointSize;
+	}
+
+	public SnapshotFormat getSnapshotFormat() {
+		return snapshotFormat;
+	}
+
+	/**
+	 * @param snapshotFormat Binary snapshot written next to the file, read instead of it on startup
+	 */
+	public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+		checkStoreNotCreated("snapshotFormat");
+		this.snapshotFormat = snapshotFormat;
+	}
+
+	public Boolean getRdfXmlExport() {
+		return rdfXmlExport;
+	}
+
+	/**
+	 * @param rdfXmlExport Whether the file is still rewritten when a binary snapshot is written
+	 */
+	public void setRdfXmlExport(Boolean rdfXmlExport) {
+		checkStoreNotCreated("rdfXmlExport");
+		this.rdfXmlExport = rdfXmlExport;
+	}
+
+	public Integer getQueryCacheSize() {
+		return queryCacheSize;
+	}
+
+	/**
+	 * @param queryCacheSize Number of parsed queries each repository keeps
+	 */
+	public void setQueryCacheSize(Integer queryCacheSize) {
+		this.queryCacheSize = queryCacheSize;
+	}
+
+	public Integer getQueryResultCacheSize() {
+		return queryResultCacheSize;
+	}
+
+	/**
+	 * @param queryResultCacheSize Number of subject uris each repository keeps from query results, 0 to run every query
+	 */
+	public void setQueryResultCacheSize(Integer queryResultCacheSize) {
+		this.queryResultCacheSize = queryResultCacheSize;
+	}
+
+	public Boolean getBatchHydration() {
+		return batchHydration;
+	}
+
+	/**
+	 * @param batchHydration Whether reads returning several entities build each referenced entity once and share it
+	 */
+	public void setBatchHydration(Boolean batchHydration) {
+		this.batchHydration = batchHydration;
+	}
+
+	public Integer getEntityCacheSize() {
+		return entityCacheSize;
+	}
+
+	/**
+	 * @param entityCacheSize Number of entities read by uri that are kept, 0 to read them every time
+	 */
+	public void setEntityCacheSize(Integer entityCacheSize) {
+		this.entityCacheSize = entityCacheSize;
+	}
+
+	public Long getEntityCacheTtl() {
+		return entityCacheTtl;
+	}
+
+	/**
+	 * @param entityCacheTtl Seconds a cached entity is kept, 0 to keep it until a write changes it
+	 */
+	public void setEntityCacheTtl(Long entityCacheTtl) {
+		this.entityCacheTtl = entityCacheTtl;
+	}
+
+	public Integer getAsyncThreads() {
+		return asyncThreads;
+	}
+
+	/**
+	 * @param asyncThreads Asynchronous repository calls run at once
+	 */
+	public void setAsyncThreads(Integer asyncThreads) {
+		this.asyncThreads = asyncThreads;
+	}
+
+	public Integer getAsyncQueueSize() {
+		return asyncQueueSize;
+	}
+
+	/**
+	 * @param asyncQueueSize Asynchronous repository calls waiting for a thread, more are rejected
+	 */
+	public void setAsyncQueueSize(Integer asyncQueueSize) {
+		this.asyncQueueSize = asyncQueueSize;
+	}
+
+	public StorageMode getStorageMode() {
+		return storageMode;
+	}
+
+	/**
+	 * @param storageMode FILE to keep the model in {@link #getPath()}, TDB2 to keep it in {@link #getTdbLocation()}
+	 */
+	public void setStorageMode(StorageMode storageMode) {
+		checkStoreNotCreated("storageMode");
+		this.storageMode = storageMode;
+	}
+
+	public String getTdbLocation() {
+		return tdbLocation;
+	}
+
+	/**
+	 * @param tdbLocation TDB2 database directory, {@link #getPath()} is imported into it while it is empty
+	 */
+	public void setTdbLocation(String tdbLocation) {
+		checkStoreNotCreated("tdbLocation");
+		this.tdbLocation = tdbLocation;
+	}
+	
 }
@@ -0,0 +1,65 @@
+package vn.lanhoang.ontology.mapping;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.jena.rdf.model.Literal;
+
+/**
+ * Converters from the values read out of the model to a field's type,
+ * resolved once per field instead of on every call.
+ */
+public final class Converters {
+
+	private static final Function<Object, Object> IDENTITY = value -> value;
+	private static final Map<Class<?>, Function<String, Object>> PARSERS = new HashMap<>();
+
+	static {
+		PARSERS.put(Integer.class, Integer::valueOf);
+		PARSERS.put(Short.class, Short::valueOf);
+		PARSERS.put(Byte.class, Byte::valueOf);
+		PARSERS.put(Long.class, Long::valueOf);
+		PARSERS.put(Float.class, Float::valueOf);
+		PARSERS.put(Double.class, Double::valueOf);
+		PARSERS.put(Boolean.class, Boolean::valueOf);
+	}
+
+	private Converters() {
+	}
+
+	/**
+	 * Converter to a field's type
+	 *
+	 * @param type Field type
+	 * @return Function converting a model value to the field type
+	 */
+	public static Function<Object, Object> forType(Class<?> type) {
+		if (type == String.class) {
+			return Converters::toText;
+		}
+
+		Function<String, Object> parser = PARSERS.get(type);
+		if (parser == null) {
+			return IDENTITY;
+		}
+
+		return value -> type.isInstance(value) ? value : parser.apply(toText(value));
+	}
+
+	/**
+	 * Lexical form of a literal, or the value's text without its datatype
+	 *
+	 * @param value Model value
+	 * @return String
+	 */
+	public static String toText(Object value) {
+		if (value instanceof Literal) {
+			return ((Literal) value).getLexicalForm();
+		}
+
+		String text = value.toString();
+		int datatype = text.indexOf("^^");
+		return datatype < 0 ? text : text.substring(0, datatype);
+	}
+}
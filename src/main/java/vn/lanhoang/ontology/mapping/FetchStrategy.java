@@ -0,0 +1,81 @@
+package vn.lanhoang.ontology.mapping;
+
+import vn.lanhoang.ontology.annotation.Fetch;
+import vn.lanhoang.ontology.annotation.FetchType;
+
+/**
+ * How deep the references of an object are read.
+ *
+ * <p>Depth 0 only sets the uri of referenced objects, depth 1 reads the
+ * referenced objects, depth 2 their references too, and so on. Reads never
+ * go deeper than {@code maxNestedCount}.</p>
+ */
+public final class FetchStrategy {
+
+	/**
+	 * Referenced objects are read, their own references only carry their uri
+	 */
+	public static final FetchStrategy DEFAULT = new FetchStrategy(FetchType.EAGER, 1);
+
+	private final FetchType type;
+	private final int depth;
+
+	private FetchStrategy(FetchType type, int depth) {
+		this.type = type;
+		this.depth = depth;
+	}
+
+	/**
+	 * @return Strategy setting only the uri of referenced objects
+	 */
+	public static FetchStrategy idOnly() {
+		return new FetchStrategy(FetchType.ID, 0);
+	}
+
+	/**
+	 * @param depth Levels of references to read
+	 * @return Strategy reading references with their parent
+	 */
+	public static FetchStrategy eager(int depth) {
+		if (depth < 0) {
+			throw new IllegalArgumentException("Fetch depth must not be negative");
+		}
+
+		return new FetchStrategy(depth == 0 ? FetchType.ID : FetchType.EAGER, depth);
+	}
+
+	/**
+	 * @return Strategy reading references on first access
+	 */
+	public static FetchStrategy lazy() {
+		return new FetchStrategy(FetchType.LAZY, 0);
+	}
+
+	/**
+	 * @param fetch Field annotation
+	 * @return Strategy of the annotation
+	 */
+	public static FetchStrategy of(Fetch fetch) {
+		switch (fetch.value()) {
+		case ID:
+			return idOnly();
+		case LAZY:
+			return lazy();
+		default:
+			return eager(fetch.depth());
+		}
+	}
+
+	public FetchType getType() {
+		return type;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	@Override
+	public String toString() {
+		return "FetchStrategy [" + type + (type == FetchType.EAGER ? ", depth=" + depth : "") + "]";
+	}
+}
@@ -0,0 +1,137 @@
+package vn.lanhoang.ontology.mapping;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Getter and setter of one field, bound once when the class is registered.
+ *
+ * <p>Accessors are generated with {@link LambdaMetafactory} so that calling
+ * them costs the same as a direct method call. When the entity class is not
+ * visible to the library's class loader, plain {@link MethodHandle}s are used
+ * instead.</p>
+ */
+public class FieldAccessor {
+
+	private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+	private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+	private final Function<Object, Object> getter;
+	private final BiConsumer<Object, Object> setter;
+	private final Function<Object, Object> converter;
+
+	private FieldAccessor(Function<Object, Object> getter, BiConsumer<Object, Object> setter, Function<Object, Object> converter) {
+		this.getter = getter;
+		this.setter = setter;
+		this.converter = converter;
+	}
+
+	/**
+	 * Generate the accessor of a field
+	 *
+	 * @param getterMethod Field getter
+	 * @param setterMethod Field setter
+	 * @param fieldType Field type, used to pick the converter
+	 * @return FieldAccessor
+	 * @throws ReflectiveOperationException When the methods cannot be bound, reflection should be used
+	 */
+	public static FieldAccessor of(Method getterMethod, Method setterMethod, Class<?> fieldType) throws ReflectiveOperationException {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		getterMethod.setAccessible(true);
+		setterMethod.setAccessible(true);
+		MethodHandle getterHandle = lookup.unreflect(getterMethod);
+		MethodHandle setterHandle = lookup.unreflect(setterMethod);
+		Function<Object, Object> converter = Converters.forType(fieldType);
+
+		if (isVisible(getterMethod) && isVisible(setterMethod)) {
+			try {
+				return new FieldAccessor(generateGetter(lookup, getterHandle), generateSetter(lookup, setterHandle), converter);
+			} catch (Throwable e) {
+				// Fall back to method handles below
+			}
+		}
+
+		MethodHandle genericGetter = getterHandle.asType(GETTER);
+		MethodHandle genericSetter = setterHandle.asType(SETTER);
+		return new FieldAccessor(obj -> {
+			try {
+				return genericGetter.invokeExact(obj);
+			} catch (Throwable e) {
+				throw new AccessorException(e);
+			}
+		}, (obj, val) -> {
+			try {
+				genericSetter.invokeExact(obj, val);
+			} catch (Throwable e) {
+				throw new AccessorException(e);
+			}
+		}, converter);
+	}
+
+	public Object get(Object obj) {
+		return getter.apply(obj);
+	}
+
+	public void set(Object obj, Object val) {
+		setter.accept(obj, val);
+	}
+
+	/**
+	 * Convert a model value to the field type then set it
+	 *
+	 * @param obj Target object
+	 * @param val Model value
+	 */
+	public void convertAndSet(Object obj, Object val) {
+		setter.accept(obj, converter.apply(val));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Function<Object, Object> generateGetter(MethodHandles.Lookup lookup, MethodHandle handle) throws Throwable {
+		CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+				MethodType.methodType(Function.class),
+				GETTER, handle, handle.type().wrap());
+
+		return (Function<Object, Object>) site.getTarget().invokeExact();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Object, Object> generateSetter(MethodHandles.Lookup lookup, MethodHandle handle) throws Throwable {
+		CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+				MethodType.methodType(BiConsumer.class),
+				SETTER, handle, handle.type().wrap().changeReturnType(void.class));
+
+		return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+	}
+
+	private static boolean isVisible(Method method) {
+		Class<?> type = method.getDeclaringClass();
+		if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(type.getModifiers())) {
+			return false;
+		}
+
+		try {
+			return Class.forName(type.getName(), false, FieldAccessor.class.getClassLoader()) == type;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Failure inside a generated accessor
+	 */
+	public static class AccessorException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public AccessorException(Throwable cause) {
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package vn.lanhoang.ontology.mapping;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Supplier;
+
+/**
+ * List whose elements are read from the model on first access.
+ *
+ * <p>Saving an entity whose lazy list was never loaded leaves the property
+ * as it is in the model.</p>
+ */
+public class LazyList<E> extends AbstractList<E> implements RandomAccess {
+
+	private Supplier<List<E>> loader;
+	private volatile List<E> elements;
+
+	public LazyList(Supplier<List<E>> loader) {
+		this.loader = loader;
+	}
+
+	/**
+	 * @return Whether the elements were read
+	 */
+	public boolean isLoaded() {
+		return elements != null;
+	}
+
+	@Override
+	public E get(int index) {
+		return load().get(index);
+	}
+
+	@Override
+	public int size() {
+		return load().size();
+	}
+
+	@Override
+	public E set(int index, E element) {
+		return load().set(index, element);
+	}
+
+	@Override
+	public void add(int index, E element) {
+		load().add(index, element);
+		modCount++;
+	}
+
+	@Override
+	public E remove(int index) {
+		E removed = load().remove(index);
+		modCount++;
+		return removed;
+	}
+
+	private List<E> load() {
+		List<E> loaded = elements;
+		if (loaded == null) {
+			synchronized (this) {
+				if (elements == null) {
+					elements = loader.get();
+					loader = null;
+				}
+				loaded = elements;
+			}
+		}
+
+		return loaded;
+	}
+
+	@Override
+	public String toString() {
+		return isLoaded() ? elements.toString() : "LazyList [not loaded]";
+	}
+}
@@ -0,0 +1,122 @@
+package vn.lanhoang.ontology.mapping;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.cglib.proxy.Callback;
+import org.springframework.cglib.proxy.Enhancer;
+import org.springframework.cglib.proxy.MethodInterceptor;
+import org.springframework.cglib.proxy.MethodProxy;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * CGLIB proxies standing for a referenced object until it is used.
+ *
+ * <p>The proxy answers the getter of its {@code @Name} field with the uri it
+ * was created with. Any other call reads the object from the model once, then
+ * is forwarded to it.</p>
+ */
+public final class LazyReferences {
+
+	private static final Map<Class<?>, ProxyType> TYPES = new ConcurrentHashMap<>();
+
+	private LazyReferences() {
+	}
+
+	/**
+	 * Create a proxy of a referenced object
+	 *
+	 * @param type Referenced class, needs a public constructor without arguments
+	 * @param nameField {@code @Name} field of the class
+	 * @param uri Uri of the referenced object
+	 * @param loader Reads the referenced object
+	 * @return Proxy extending the referenced class
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T create(Class<T> type, Field nameField, String uri, Supplier<?> loader) {
+		ProxyType proxyType = TYPES.computeIfAbsent(type, key -> new ProxyType(key, nameField));
+		return (T) proxyType.newInstance(new LazyInterceptor(proxyType.nameGetter, uri, loader));
+	}
+
+	private static class ProxyType {
+		private final Class<?> proxyClass;
+		private final Method nameGetter;
+
+		ProxyType(Class<?> type, Field nameField) {
+			Enhancer enhancer = new Enhancer();
+			enhancer.setSuperclass(type);
+			enhancer.setUseFactory(false);
+			enhancer.setInterceptDuringConstruction(false);
+			enhancer.setCallbackType(MethodInterceptor.class);
+			this.proxyClass = enhancer.createClass();
+			this.nameGetter = findGetter(type, nameField);
+		}
+
+		Object newInstance(LazyInterceptor interceptor) {
+			Enhancer.registerCallbacks(proxyClass, new Callback[] { interceptor });
+			try {
+				return proxyClass.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalArgumentException("Cannot create a proxy of " + proxyClass.getSuperclass().getName(), e);
+			} finally {
+				Enhancer.registerCallbacks(proxyClass, null);
+			}
+		}
+
+		/**
+		 * Same getter lookup as {@code ModelMapper}
+		 */
+		private static Method findGetter(Class<?> type, Field field) {
+			String fieldName = field.getName();
+			for (Method method : ReflectionUtils.getAllDeclaredMethods(type)) {
+				if (method.getName().startsWith("get") && method.getParameterCount() == 0
+						&& method.getName().length() == fieldName.length() + 3
+						&& method.getName().toLowerCase().endsWith(fieldName.toLowerCase())) {
+					return method;
+				}
+			}
+
+			return null;
+		}
+	}
+
+	private static class LazyInterceptor implements MethodInterceptor {
+		private final Method nameGetter;
+		private final String uri;
+		private Supplier<?> loader;
+		private volatile Object target;
+
+		LazyInterceptor(Method nameGetter, String uri, Supplier<?> loader) {
+			this.nameGetter = nameGetter;
+			this.uri = uri;
+			this.loader = loader;
+		}
+
+		@Override
+		public Object intercept(Object proxy, Method method, Object[] args, MethodProxy methodProxy) throws Throwable {
+			if (target == null && nameGetter != null && method.getName().equals(nameGetter.getName()) && args.length == 0) {
+				return uri;
+			}
+
+			return methodProxy.invoke(load(), args);
+		}
+
+		private Object load() {
+			Object loaded = target;
+			if (loaded == null) {
+				synchronized (this) {
+					if (target == null) {
+						target = loader.get();
+						loader = null;
+					}
+					loaded = target;
+				}
+			}
+
+			return loaded;
+		}
+	}
+}
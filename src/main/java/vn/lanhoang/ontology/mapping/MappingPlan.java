@@ -0,0 +1,209 @@
+package vn.lanhoang.ontology.mapping;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.springframework.util.ReflectionUtils;
+
+import vn.lanhoang.ontology.ModelManager;
+import vn.lanhoang.ontology.annotation.Fetch;
+import vn.lanhoang.ontology.annotation.Name;
+import vn.lanhoang.ontology.annotation.OntologyObject;
+
+/**
+ * How the fields of an ontology class map to properties of the model,
+ * resolved once per class.
+ */
+public class MappingPlan {
+
+	public enum Kind {
+		SCALAR, REFERENCE, LIST, UNSUPPORTED
+	}
+
+	private final Class<?> type;
+	private final String baseUri;
+	private final Field nameField;
+	private final List<PropertyMapping> mappings;
+	private final Map<Node, PropertyMapping> byPredicate;
+
+	private MappingPlan(Class<?> type, String baseUri, Field nameField, List<PropertyMapping> mappings) {
+		this.type = type;
+		this.baseUri = baseUri;
+		this.nameField = nameField;
+		this.mappings = Collections.unmodifiableList(mappings);
+
+		Map<Node, PropertyMapping> map = new HashMap<>();
+		for (PropertyMapping mapping : mappings) {
+			map.put(mapping.getProperty().asNode(), mapping);
+		}
+		this.byPredicate = Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * Build the plan of an ontology class
+	 *
+	 * @param type Ontology class
+	 * @param baseUri Base uri the properties are resolved against
+	 * @return MappingPlan
+	 */
+	public static MappingPlan of(Class<?> type, String baseUri) {
+		ModelManager modelManager = ModelManager.instance();
+		List<PropertyMapping> mappings = new ArrayList<>();
+		Field[] nameField = new Field[1];
+
+		ReflectionUtils.doWithFields(type, field -> {
+			if (field.isAnnotationPresent(Name.class)) {
+				nameField[0] = field;
+				return;
+			}
+
+			Class<?> fieldType = field.getType();
+			Kind kind;
+			Class<?> target = null;
+			if (modelManager.isSupported(fieldType)) {
+				kind = Kind.SCALAR;
+			} else if (fieldType.equals(List.class)) {
+				kind = Kind.LIST;
+				target = (Class<?>) ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+			} else if (fieldType.isAnnotationPresent(OntologyObject.class)) {
+				kind = Kind.REFERENCE;
+				target = fieldType;
+			} else {
+				kind = Kind.UNSUPPORTED;
+			}
+
+			Fetch fetch = field.getAnnotation(Fetch.class);
+			mappings.add(new PropertyMapping(mappings.size(), field,
+					ResourceFactory.createProperty(baseUri + field.getName()), kind, target,
+					fetch == null ? null : FetchStrategy.of(fetch)));
+		});
+
+		return new MappingPlan(type, baseUri, nameField[0], mappings);
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	public String getBaseUri() {
+		return baseUri;
+	}
+
+	public Field getNameField() {
+		return nameField;
+	}
+
+	public List<PropertyMapping> getMappings() {
+		return mappings;
+	}
+
+	/**
+	 * Mapping of a predicate
+	 *
+	 * @param predicate Statement predicate
+	 * @return Mapping of the predicate, null when no field maps to it
+	 */
+	public PropertyMapping get(Node predicate) {
+		return byPredicate.get(predicate);
+	}
+
+	/**
+	 * Mapping of a field
+	 *
+	 * @param fieldName Field name
+	 * @return Mapping of the field, null when the class has no such mapped field
+	 */
+	public PropertyMapping get(String fieldName) {
+		for (PropertyMapping mapping : mappings) {
+			if (mapping.getField().getName().equals(fieldName)) {
+				return mapping;
+			}
+		}
+
+		return null;
+	}
+
+	public static class PropertyMapping {
+		private final int index;
+		private final Field field;
+		private final Property property;
+		private final Kind kind;
+		private final Class<?> targetType;
+		private final Constructor<?> targetConstructor;
+		private final FetchStrategy fetch;
+
+		PropertyMapping(int index, Field field, Property property, Kind kind, Class<?> targetType, FetchStrategy fetch) {
+			this.index = index;
+			this.field = field;
+			this.property = property;
+			this.kind = kind;
+			this.targetType = targetType;
+			this.targetConstructor = targetType == null ? null : constructor(targetType);
+			this.fetch = fetch;
+		}
+
+		/**
+		 * @return Position of the mapping in {@link MappingPlan#getMappings()}
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		public Field getField() {
+			return field;
+		}
+
+		public Property getProperty() {
+			return property;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * @return Referenced class, or list element class
+		 */
+		public Class<?> getTargetType() {
+			return targetType;
+		}
+
+		/**
+		 * @return Strategy of the field's {@code @Fetch} annotation, null without one
+		 */
+		public FetchStrategy getFetch() {
+			return fetch;
+		}
+
+		/**
+		 * Create an empty instance of the referenced class
+		 *
+		 * @return Object
+		 * @throws ReflectiveOperationException
+		 */
+		public Object newTarget() throws ReflectiveOperationException {
+			if (targetConstructor == null) {
+				throw new NoSuchMethodException(targetType.getName() + ".<init>()");
+			}
+
+			return targetConstructor.newInstance();
+		}
+
+		private static Constructor<?> constructor(Class<?> type) {
+			try {
+				return type.getConstructor();
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+		}
+	}
+}
@@ -1,80 +1,203 @@
 package vn.lanhoang.ontology.model.query;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
-import org.apache.commons.lang3.RegExUtils;
-import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpAsQuery;
+import org.apache.jena.sparql.algebra.op.OpBGP;
+import org.apache.jena.sparql.algebra.op.OpDistinct;
+import org.apache.jena.sparql.algebra.op.OpFilter;
+import org.apache.jena.sparql.algebra.op.OpJoin;
+import org.apache.jena.sparql.algebra.op.OpProject;
+import org.apache.jena.sparql.algebra.op.OpTable;
+import org.apache.jena.sparql.algebra.op.OpUnion;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.expr.E_Regex;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprList;
+import org.apache.jena.sparql.expr.ExprVar;
+import org.apache.jena.sparql.expr.NodeValue;
 
 import vn.lanhoang.ontology.configuration.OntologyVariables;
 
+/**
+ * Builds the SPARQL algebra of a {@link QueryContainer} selecting
+ * {@code ?subject}.
+ *
+ * <p>The conditions of an {@code AND} container, and of the {@code AND}
+ * containers nested in it, form one basic graph pattern, each {@code CONTAINS}
+ * filter sitting right over it. {@code OR} containers become unions.
+ * Conditions keep their order, except that the equalities of a basic graph
+ * pattern come before the patterns binding a value. That is only the order
+ * the patterns are written in: no selectivity is estimated here, joins are
+ * ordered by Jena's optimizer when the query runs. The query only depends on
+ * the container, never on the data.</p>
+ */
 public class QueryParser {
+	public static final Var SUBJECT = Var.alloc("subject");
+
+	private static final String CONTAINS = "CONTAINS";
+
 	private String uri;
-	
+
 	private String prefix;
 
 	public QueryParser(String uri, String prefix) {
 		this.uri = uri;
 		this.prefix = prefix;
 	}
-	
+
 	public QueryParser(OntologyVariables v) {
 		this(v.getBaseUri(), v.getPreffix());
 	}
-	
+
+	/**
+	 * @param queryContainer Conditions
+	 * @return Query text, to run with {@code OntologyRepository.query(String)}
+	 */
 	public String parse(QueryContainer queryContainer) {
-		Set<String> subjects = new HashSet<>();
-		String result = parse(queryContainer, subjects, new AtomicInteger(0));
-		result = RegExUtils.removeFirst(result, "\\{");
-		return StringUtils.removeEnd(result, "}").concat("\n\tGROUPBY ?subject");
+		return toQuery(queryContainer).toString();
 	}
-	
-	private String parse(QueryContainer queryContainer, Set<String> subjects, AtomicInteger aNo) {
-		Set<String> conditions = new HashSet<>();
-		boolean isAnd = Operator.AND.equals(queryContainer.getOperator());
-		
-		for (QueryDTO queryDTO: queryContainer.getConditions()) {
-			if (queryDTO.getCondition().equalsIgnoreCase("CONTAINS")) {
-				conditions.add(getQueryContains(queryDTO, aNo.incrementAndGet()));
-			} else {
-				conditions.add(getQueryEqual(queryDTO));
+
+	/**
+	 * @param queryContainer Conditions
+	 * @return {@code SELECT DISTINCT ?subject} query of the conditions
+	 */
+	public Query toQuery(QueryContainer queryContainer) {
+		Op op = new OpDistinct(new OpProject(toOp(queryContainer), Collections.singletonList(SUBJECT)));
+		return OpAsQuery.asQuery(op);
+	}
+
+	/**
+	 * @param queryContainer Conditions
+	 * @return Algebra binding {@code ?subject}, not projected
+	 */
+	public Op toOp(QueryContainer queryContainer) {
+		return order(new Parse().container(queryContainer));
+	}
+
+	private Node predicate(String predicate) {
+		if (prefix != null && !prefix.isEmpty() && predicate.startsWith(prefix)) {
+			predicate = predicate.substring(prefix.length());
+		}
+
+		return NodeFactory.createURI(uri + predicate);
+	}
+
+	/**
+	 * State of one parse: variables are numbered in the order conditions are met
+	 */
+	private class Parse {
+		private int variables;
+
+		Op container(QueryContainer queryContainer) {
+			return Operator.OR.equals(queryContainer.getOperator()) ? or(queryContainer) : and(queryContainer);
+		}
+
+		private Op and(QueryContainer queryContainer) {
+			BasicPattern pattern = new BasicPattern();
+			ExprList filters = new ExprList();
+			List<Op> unions = new ArrayList<>();
+			flatten(queryContainer, pattern, filters, unions);
+
+			Op op = OpFilter.filterBy(filters, pattern.isEmpty() ? OpTable.unit() : new OpBGP(pattern));
+			for (Op union : unions) {
+				op = OpJoin.create(op, union);
+			}
+
+			return op;
+		}
+
+		/**
+		 * Conditions of an AND container and its nested AND containers
+		 */
+		private void flatten(QueryContainer queryContainer, BasicPattern pattern, ExprList filters, List<Op> unions) {
+			for (QueryDTO queryDTO : conditions(queryContainer)) {
+				Expr filter = condition(queryDTO, pattern);
+				if (filter != null) {
+					filters.add(filter);
+				}
+			}
+
+			for (QueryContainer container : containers(queryContainer)) {
+				if (Operator.OR.equals(container.getOperator())) {
+					unions.add(or(container));
+				} else {
+					flatten(container, pattern, filters, unions);
+				}
 			}
 		}
-		
-		for (QueryContainer container: queryContainer.getQueries()) {
-			conditions.add(parse(container, subjects, aNo));
+
+		private Op or(QueryContainer queryContainer) {
+			Op op = null;
+			for (QueryDTO queryDTO : conditions(queryContainer)) {
+				BasicPattern pattern = new BasicPattern();
+				Expr filter = condition(queryDTO, pattern);
+				Op branch = new OpBGP(pattern);
+				op = OpUnion.create(op, filter == null ? branch : OpFilter.filter(filter, branch));
+			}
+
+			for (QueryContainer container : containers(queryContainer)) {
+				op = OpUnion.create(op, container(container));
+			}
+
+			return op == null ? OpTable.unit() : op;
 		}
-		
-		StringBuilder sb = new StringBuilder();
-		String wheres = String.join(isAnd ? "\n\t\t.\n\t\t": "\n\t\tUNION\n\t\t", conditions);
-		sb.append("{\n\t");
-		sb.append("SELECT ?subject \n\t");
-		sb.append("WHERE {\n\t\t");
-		sb.append(wheres.replace("\n", "\n\t"));
-		sb.append("\n\t\t}\n");
-		sb.append("\t}");
-
-		return sb.toString().replace("\n", "\n\t");
+
+		/**
+		 * Add the triple pattern of a condition
+		 *
+		 * @return Filter of the condition, null when the pattern is enough
+		 */
+		private Expr condition(QueryDTO queryDTO, BasicPattern pattern) {
+			Node predicate = predicate(queryDTO.getPredicate());
+			if (CONTAINS.equalsIgnoreCase(queryDTO.getCondition())) {
+				Var value = Var.alloc("v" + (++variables));
+				pattern.add(Triple.create(SUBJECT, predicate, value));
+				return new E_Regex(new ExprVar(value), NodeValue.makeString(queryDTO.getObject()), NodeValue.makeString("i"));
+			}
+
+			pattern.add(Triple.create(SUBJECT, predicate, NodeFactory.createLiteral(queryDTO.getObject())));
+			return null;
+		}
+	}
+
+	/**
+	 * Put the equalities of every basic graph pattern first, a stable sort so
+	 * that the conditions otherwise keep their order
+	 */
+	private static Op order(Op op) {
+		if (op instanceof OpBGP) {
+			List<Triple> triples = new ArrayList<>(((OpBGP) op).getPattern().getList());
+			triples.sort(Comparator.comparing(triple -> triple.getObject().isVariable()));
+			return new OpBGP(BasicPattern.wrap(triples));
+		}
+		if (op instanceof OpFilter) {
+			return OpFilter.filterBy(((OpFilter) op).getExprs(), order(((OpFilter) op).getSubOp()));
+		}
+		if (op instanceof OpJoin) {
+			return OpJoin.create(order(((OpJoin) op).getLeft()), order(((OpJoin) op).getRight()));
+		}
+		if (op instanceof OpUnion) {
+			return OpUnion.create(order(((OpUnion) op).getLeft()), order(((OpUnion) op).getRight()));
+		}
+
+		return op;
 	}
-	
-	private String getQueryContains(QueryDTO queryDTO, int no) {
-		String pred = prefix.concat(queryDTO.getPredicate());
-		String object = "v" + no;
-		
-		StringBuilder sb = new StringBuilder();
-		sb.append("\t{ \t");
-		sb.append(String.format("?subject %s ?%s .\t", pred, object));
-		sb.append(String.format("FILTER (regex(?%s, \"%s\", \"i\")) \t", object, queryDTO.getObject()));
-		sb.append(" }");
-		
-		return sb.toString();
+
+	private static List<QueryDTO> conditions(QueryContainer queryContainer) {
+		return queryContainer.getConditions() == null ? Collections.emptyList() : queryContainer.getConditions();
 	}
-	
-	private String getQueryEqual(QueryDTO queryDTO) {
-		String pred = prefix.concat(queryDTO.getPredicate());
-		
-		return String.format("{ ?subject %s \"%s\" }"
-		, pred, queryDTO.getObject());
+
+	private static List<QueryContainer> containers(QueryContainer queryContainer) {
+		return queryContainer.getQueries() == null ? Collections.emptyList() : queryContainer.getQueries();
 	}
 }
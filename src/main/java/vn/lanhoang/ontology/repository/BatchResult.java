@@ -0,0 +1,56 @@
+package vn.lanhoang.ontology.repository;
+
+import java.util.concurrent.TimeUnit;
+
+import vn.lanhoang.ontology.storage.ChangeSet;
+
+/**
+ * Throughput of a {@code saveAll} or {@code removeAll} call
+ */
+public class BatchResult {
+	private final int entities;
+	private final int triplesAdded;
+	private final int triplesRemoved;
+	private final long elapsedNanos;
+
+	public BatchResult(int entities, ChangeSet changes, long elapsedNanos) {
+		this.entities = entities;
+		this.triplesAdded = changes.getAdded().size();
+		this.triplesRemoved = changes.getRemoved().size();
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public int getEntities() {
+		return entities;
+	}
+
+	public int getTriplesAdded() {
+		return triplesAdded;
+	}
+
+	public int getTriplesRemoved() {
+		return triplesRemoved;
+	}
+
+	public int getTriplesChanged() {
+		return triplesAdded + triplesRemoved;
+	}
+
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	}
+
+	public double getEntitiesPerSecond() {
+		return elapsedNanos == 0 ? 0 : entities * 1e9 / elapsedNanos;
+	}
+
+	public double getTriplesPerSecond() {
+		return elapsedNanos == 0 ? 0 : getTriplesChanged() * 1e9 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("BatchResult [entities=%d, added=%d, removed=%d, elapsed=%d ms, %.1f entities/s, %.1f triples/s]",
+				entities, triplesAdded, triplesRemoved, getElapsedMillis(), getEntitiesPerSecond(), getTriplesPerSecond());
+	}
+}
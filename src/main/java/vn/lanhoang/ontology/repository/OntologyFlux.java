@@ -0,0 +1,64 @@
+package vn.lanhoang.ontology.repository;
+
+import java.util.List;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactor streams over a repository, for applications that have
+ * {@code reactor-core} on their classpath.
+ *
+ * <p>Entities are read a batch at a time in the order of their uris, only
+ * when the subscriber asks for more. Each batch starts after the uri of the
+ * last entity emitted, so entities saved or removed before it do not shift
+ * it. A slow subscriber holds at most two batches, and no read of the model
+ * stays open between batches.</p>
+ */
+public final class OntologyFlux {
+
+	public static final int DEFAULT_BATCH_SIZE = 256;
+
+	private OntologyFlux() {
+	}
+
+	/**
+	 * All entities of a repository, read on the repository's async executor
+	 *
+	 * @param repository Repository
+	 * @return Flux of entities
+	 */
+	public static <R> Flux<R> findAll(OntologyRepository<R> repository) {
+		return findAll(repository, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * All entities of a repository, read on the repository's async executor
+	 *
+	 * @param repository Repository
+	 * @param batchSize Entities read at once
+	 * @return Flux of entities
+	 */
+	public static <R> Flux<R> findAll(OntologyRepository<R> repository, int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize must be positive");
+		}
+
+		Scheduler scheduler = Schedulers.fromExecutor(repository.getOntologyVariables().getAsyncExecutor());
+		// The state is the uri of the last entity emitted, empty before the first batch
+		return Flux.<List<R>, String>generate(() -> "", (last, sink) -> {
+					List<R> entities = repository.findAfterUri(last, batchSize);
+					if (!entities.isEmpty()) {
+						sink.next(entities);
+					}
+					if (entities.size() < batchSize) {
+						sink.complete();
+						return last;
+					}
+					return repository.getUri(entities.get(entities.size() - 1));
+				})
+				.subscribeOn(scheduler)
+				.flatMapIterable(entities -> entities, 1);
+	}
+}
@@ -1,50 +1,80 @@
 package vn.lanhoang.ontology.repository;
 
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import javax.annotation.PostConstruct;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.jena.atlas.iterator.Iter;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.QueryFactory;
 import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.QuerySolutionMap;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.ResIterator;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.rdf.model.StmtIterator;
-import org.apache.jena.riot.Lang;
-import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
 import org.apache.jena.vocabulary.RDF;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.GenericTypeResolver;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
 
 import org.springframework.util.ReflectionUtils;
 import vn.lanhoang.ontology.IModelExecutor;
 import vn.lanhoang.ontology.ModelManager;
-import vn.lanhoang.ontology.ModelMapper;
-import vn.lanhoang.ontology.annotation.Name;
+import vn.lanhoang.ontology.cache.EntityCache;
+import vn.lanhoang.ontology.cache.IdentityMap;
+import vn.lanhoang.ontology.cache.QueryPlanCache;
+import vn.lanhoang.ontology.cache.QueryResultCache;
 import vn.lanhoang.ontology.annotation.OntologyObject;
 import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.mapping.FetchStrategy;
+import vn.lanhoang.ontology.mapping.LazyList;
+import vn.lanhoang.ontology.mapping.MappingPlan;
+import vn.lanhoang.ontology.mapping.MappingPlan.PropertyMapping;
 import vn.lanhoang.ontology.model.QueryParam;
-import vn.lanhoang.ontology.utils.ModelUtils;
+import vn.lanhoang.ontology.model.query.QueryContainer;
+import vn.lanhoang.ontology.model.query.QueryParser;
+import vn.lanhoang.ontology.storage.ChangeSet;
+import vn.lanhoang.ontology.storage.SubclassIndex;
+import vn.lanhoang.ontology.utils.BatchHydrator;
 
 public abstract class OntologyRepository<R> {
 	
@@ -55,28 +85,46 @@ public abstract class OntologyRepository<R> {
 	private OntologyVariables ontologyVariables;
 	private final ModelManager modelManager = ModelManager.instance();
 	private final IModelExecutor executor;
+	private QueryPlanCache planCache;
+	private QueryResultCache resultCache;
+	private volatile SubclassIndex planIndex;
+	private volatile long planVersion;
+	private volatile long planGeneration;
+	private volatile Query propertyValueQuery;
+	private volatile long[] memberCount;
 
 	@Autowired
 	public final void setOntologyVariables(OntologyVariables ontologyVariables) {
 		this.ontologyVariables = ontologyVariables;
 	}
+	
+	public final OntologyVariables getOntologyVariables() {
+		return ontologyVariables;
+	}
+	
+	/**
+	 * @return Class of the repository's entities
+	 */
+	public final Class<R> getEntityType() {
+		return type;
+	}
 
 	@SuppressWarnings("unchecked")
 	protected OntologyRepository() {
 		type = (Class<R>) GenericTypeResolver.resolveTypeArgument(getClass(), OntologyRepository.class);
 
 		// Register to ModelManager
-		executor = new ModelMapper(type);
+		executor = modelManager.register(type);
 
 		ReflectionUtils.doWithFields(type, field -> {
 			if (field.getType().isAnnotationPresent(OntologyObject.class)) {
 				// Register field to ModelManager
-				new ModelMapper(field.getType());
+				modelManager.register(field.getType());
 			} else if (field.getType().equals(List.class)) {
 				ParameterizedType fieldListType = (ParameterizedType) field.getGenericType();
 				Class<?> fieldListClass = (Class<?>) fieldListType.getActualTypeArguments()[0];
 
-				new ModelMapper(fieldListClass);
+				modelManager.register(fieldListClass);
 			}
 		});
 		
@@ -97,10 +145,12 @@ public abstract class OntologyRepository<R> {
 		Model model = ontologyVariables.getModel();
 		this.classUri = ontologyVariables.getBaseUri() + classUri;
 		this.klass = model.getProperty(classUri);
-	}
-	
-	private void mapToObject(R obj, Resource res, Model model) throws InvocationTargetException, IllegalAccessException {
-		ModelUtils.mapToObject(obj, res, null, true, model, ontologyVariables, type);
+		this.planCache = new QueryPlanCache(ontologyVariables.getQueryCacheSize());
+		Integer resultCacheSize = ontologyVariables.getQueryResultCacheSize();
+		if (resultCacheSize != null && resultCacheSize > 0) {
+			this.resultCache = new QueryResultCache(resultCacheSize);
+		}
+		checkPlans();
 	}
 	
 	private boolean validateUri(String uri) {
@@ -115,114 +165,156 @@ public abstract class OntologyRepository<R> {
 	 * @return R
 	 */
 	public R save(R obj) {
-		IModelExecutor mapper = modelManager.getExecutor(type);
-		String baseUri = ontologyVariables.getBaseUri();
-		AtomicReference<Resource> root = new AtomicReference<>();
-		Map<Property, Object> properties = new HashMap<>();
-		Model model = ontologyVariables.getModel();
-
-		Field mainId = mapper.getNameField();
-
-		try {
-			String uniqueUri = mapper.invokeGetter(mainId, obj).toString();
-			if (!uniqueUri.startsWith(baseUri)) {
-				uniqueUri = baseUri + uniqueUri;
+		saveChanges(obj);
+		
+		return obj;
+	}
+	
+	/**
+	 * Save an entity to the model, only the statements whose value changed
+	 * are written
+	 * 
+	 * @param obj
+	 * @return Triples added and removed, empty when the entity was unchanged
+	 */
+	public ChangeSet saveChanges(R obj) {
+		return write(model -> applySave(obj, model));
+	}
+	
+	/**
+	 * Save entities to the model in a single write
+	 * 
+	 * @param objs Entities to save
+	 * @return Throughput of the batch
+	 */
+	public BatchResult saveAll(Iterable<R> objs) {
+		long start = System.nanoTime();
+		AtomicInteger count = new AtomicInteger();
+		ChangeSet changes = write(model -> {
+			for (R obj : objs) {
+				applySave(obj, model);
+				count.incrementAndGet();
 			}
-			if (!validateUri(uniqueUri)) {
+		});
+		
+		BatchResult result = new BatchResult(count.get(), changes, System.nanoTime() - start);
+		log.info("saveAll {}: {}", type.getSimpleName(), result);
+		return result;
+	}
+	
+	/**
+	 * Diff the entity's fields against the statements of its resource. A
+	 * null scalar removes the property, a null reference or list, or a lazy
+	 * list that was never loaded, leaves it as it is
+	 */
+	private void applySave(R obj, Model model) {
+		MappingPlan plan = modelManager.getPlan(type, ontologyVariables.getBaseUri());
+		Graph graph = model.getGraph();
+		Node subject;
+		
+		try {
+			Object name = executor.invokeGetter(executor.getNameField(), obj);
+			if (name == null || !validateUri(toUniqueUri(name.toString()))) {
 				throw new IllegalArgumentException("URI is of invalid format");
 			}
-
-			root.set(model.createResource(uniqueUri));
-
-			ReflectionUtils.doWithFields(type, field -> {
-				try {
-					String propUri = baseUri + field.getName();
-					if (field.isAnnotationPresent(Name.class)) {
-						return;
-					} else if (field.getType().equals(List.class)) {
-						ParameterizedType fieldListType = (ParameterizedType) field.getGenericType();
-						Class<?> fieldListClass = (Class<?>) fieldListType.getActualTypeArguments()[0];
-						IModelExecutor subMapper = modelManager.getExecutor(fieldListClass);
-
-						List<?> list = (List<?>) mapper.invokeGetter(field, obj);
-						if (list != null) {
-							Property prop = model.getProperty(baseUri + field.getName());
-							List<Resource> subReses = new ArrayList<>();
-							for (Object object : list) {
-								String subUri = subMapper.invokeGetName(object).toString();
-								if (StringUtils.isNotBlank(subUri)) {
-									Resource subRes = model.getResource(subUri);
-									subReses.add(subRes);
-								}
-							}
-
-							properties.put(prop, subReses);
-						}
-					} else if (field.getType().isAnnotationPresent(OntologyObject.class)) {
-						Object object = mapper.invokeGetter(field, obj);
-						if (object != null) {
-							IModelExecutor subMapper = modelManager.getExecutor(field.getType());
-							Property prop = model.getProperty(propUri);
-							String subUri = subMapper.invokeGetName(object).toString();
-							if (StringUtils.isNotBlank(subUri)) {
-								Resource subRes = model.getResource(subUri);
-								properties.put(prop, subRes);
-							} else {
-								properties.put(prop, null);
-							}
-						}
-					} else {
-						properties.put(model.getProperty(propUri), mapper.invokeGetter(field, obj));
-					}
-				} catch (IllegalAccessException | InvocationTargetException e) {
-					throw new IllegalArgumentException("Object has illegal data");
+			subject = NodeFactory.createURI(toUniqueUri(name.toString()));
+			
+			for (PropertyMapping mapping : plan.getMappings()) {
+				List<Node> values = toNodes(mapping, executor.invokeGetter(mapping.getField(), obj));
+				if (values != null) {
+					replaceValues(graph, subject, mapping.getProperty().asNode(), values);
 				}
-
-			});
+			}
 		} catch (IllegalAccessException | InvocationTargetException e) {
 			throw new IllegalArgumentException("Object has illegal data");
 		}
-
 		
-		for (Map.Entry<Property, Object> entry : properties.entrySet()) {
-			Object value = entry.getValue();
-			Property key = entry.getKey();
-			//TODO Make better update statements
-			// assert false incase root is null
-			assert false;
-			root.get().removeAll(key);
+		Triple typeTriple = Triple.create(subject, RDF.type.asNode(), klass.asNode());
+		if (!graph.contains(typeTriple)) {
+			graph.add(typeTriple);
+		}
+	}
+	
+	/**
+	 * Values a field should have in the model, null when it is left untouched
+	 */
+	private List<Node> toNodes(PropertyMapping mapping, Object value) throws IllegalAccessException, InvocationTargetException {
+		switch (mapping.getKind()) {
+		case LIST:
+			if (value == null || (value instanceof LazyList && !((LazyList<?>) value).isLoaded())) {
+				return null;
+			}
 			
-			if (value != null) {
-				if (value instanceof Resource) {
-					model.add(root.get(), entry.getKey(), (Resource) entry.getValue());
-				} else if (value instanceof List) {
-					for (Resource subRes : (List<Resource>) value) {
-						model.add(root.get(), entry.getKey(), subRes);
-					}
-				} else if (value != null) {
-					model.add(root.get(), key, value.toString());
+			IModelExecutor subMapper = modelManager.getExecutor(mapping.getTargetType());
+			List<Node> nodes = new ArrayList<>();
+			for (Object object : (List<?>) value) {
+				Node node = toReference(subMapper, object);
+				if (node != null && !nodes.contains(node)) {
+					nodes.add(node);
 				}
 			}
+			return nodes;
+		case REFERENCE:
+			if (value == null) {
+				return null;
+			}
+			
+			Node node = toReference(modelManager.getExecutor(mapping.getTargetType()), value);
+			return node == null ? Collections.emptyList() : Collections.singletonList(node);
+		default:
+			return value == null ? Collections.emptyList()
+					: Collections.singletonList(NodeFactory.createLiteral(value.toString()));
+		}
+	}
+	
+	private Node toReference(IModelExecutor subMapper, Object object) throws IllegalAccessException, InvocationTargetException {
+		Object subUri = object == null ? null : subMapper.invokeGetName(object);
+		if (subUri == null || StringUtils.isBlank(subUri.toString())) {
+			return null;
 		}
-		model.add(root.get(), RDF.type, model.getResource(classUri));
 		
-		OutputStream out = null;
+		return NodeFactory.createURI(toUniqueUri(subUri.toString()));
+	}
+	
+	/**
+	 * Remove the statements whose value is not wanted anymore and add the
+	 * missing ones. A literal with the same lexical form as the wanted value
+	 * is kept, whatever its datatype
+	 */
+	private void replaceValues(Graph graph, Node subject, Node property, List<Node> values) {
+		List<Node> missing = new ArrayList<>(values);
+		List<Triple> stale = new ArrayList<>();
+		ExtendedIterator<Triple> existing = graph.find(subject, property, Node.ANY);
 		try {
-			out = new FileOutputStream(ontologyVariables.getPath());
-			RDFDataMgr.write(out, model, Lang.RDFXML);
-		} catch (Exception e) {
-			e.printStackTrace();
-		} finally {
-			if (out != null) {
-				try {
-					out.close();
-				} catch (IOException e) {
-					e.printStackTrace();
+			while (existing.hasNext()) {
+				Triple triple = existing.next();
+				if (!removeMatch(missing, triple.getObject())) {
+					stale.add(triple);
 				}
 			}
+		} finally {
+			existing.close();
 		}
 		
-		return obj;
+		for (Triple triple : stale) {
+			graph.delete(triple);
+		}
+		for (Node value : missing) {
+			graph.add(Triple.create(subject, property, value));
+		}
+	}
+	
+	private static boolean removeMatch(List<Node> values, Node existing) {
+		for (Iterator<Node> iter = values.iterator(); iter.hasNext();) {
+			Node value = iter.next();
+			if (value.equals(existing) || (value.isLiteral() && existing.isLiteral()
+					&& value.getLiteralLexicalForm().equals(existing.getLiteralLexicalForm()))) {
+				iter.remove();
+				return true;
+			}
+		}
+		
+		return false;
 	}
 	
 	/**
@@ -231,438 +323,1138 @@ public abstract class OntologyRepository<R> {
 	 * @return List<R>
 	 */
 	public List<R> find() {
-		Model model = ontologyVariables.getModel();
-
-		String queryStr = ontologyVariables.getPreffixes()
-				+ " SELECT ?subject \r\n"
-				+ " WHERE { "
-				+ " 	{ "
-				+ " 		{ ?subject rdf:type <" + classUri + "> } "
-				+ "			UNION "
-				+ "			{ ?o rdfs:subClassOf <" + classUri + "> } . { ?subject rdf:type ?o } "
-				+ " 	} . "
-				+ " }"
-				+ "GROUP BY ?subject";
-
-		List<R> objects = new ArrayList<>();
-
-		Query query = QueryFactory.create(queryStr);
-		try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-			ResultSet results = qexec.execSelect();
-
-			while (results.hasNext()) {
-				QuerySolution soln = results.next();
-				Resource res = soln.getResource("subject");
-				R obj = type.getDeclaredConstructor().newInstance();
-				mapToObject(obj, res, model);
-				objects.add(obj);
-			}
-		} catch (NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
-			log.error("Error reading object");
-		} finally {
-			model.close();
-		}
-
-		return objects;
+		return find((FetchStrategy) null);
 	}
 	
 	/**
+	 * Find all entity base on class, reading references with a fetch strategy
 	 * 
-	 * Find an entity base on its unique URI
-	 * 
-	 * @param uriTag The entity's unique URI
-	 * @return Optional<R>
+	 * @param strategy How deep references are read, null for the fields' own
+	 * @return List<R>
 	 */
-	public Optional<R> findByUriTag(String uriTag) {
-		String baseUri = ontologyVariables.getBaseUri();
-		String uniqueUri;
-		if (uriTag.startsWith(baseUri)) {
-			uniqueUri = uriTag;
-		} else {
-			uniqueUri = baseUri + uriTag;
-		}
-		String queryStr = ontologyVariables.getPreffixes()
-				+ " SELECT ?subject \r\n"
-				+ " WHERE {\r\n"
-				+ " 	{ "
-				+ " 		{ ?subject rdf:type <" + classUri + "> } "
-				+ "			UNION "
-				+ "			{ ?o rdfs:subClassOf <" + classUri + "> } . { ?subject rdf:type ?o } "
-				+ " 	} . "
-				+ " 	FILTER (?subject  = <" + uniqueUri + ">) \r\n"
-				+ " }"
-				+ "GROUP BY ?subject";
-		R obj = null;
-		Query query = QueryFactory.create(queryStr);
-		Model model = ontologyVariables.getModel();
-		try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-			ResultSet results = qexec.execSelect();
-		    
-		    if (results.hasNext()) {
-		    	QuerySolution soln = results.next();
-		    	Resource res = soln.getResource("subject");
-		    	obj = type.getDeclaredConstructor().newInstance();
-		    	mapToObject(obj, res, model);
-		    }
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		
-		model.close();
-		return Optional.ofNullable(obj);
+	public List<R> find(FetchStrategy strategy) {
+		return read(model -> {
+			List<Resource> members = new ArrayList<>();
+			listMembers(model).forEachRemaining(members::add);
+			
+			return hydrateAll(members, model, strategy);
+		});
 	}
 	
 	/**
+	 * Find a page of entities base on class, sorted by the pageable's properties
 	 * 
-	 * Find an entity base on its property and value
+	 * @param pageable Page request
+	 * @return Page<R>
+	 */
+	public Page<R> find(Pageable pageable) {
+		return find(pageable, null);
+	}
+	
+	/**
+	 * Find a page of entities base on class, reading references with a fetch strategy
 	 * 
-	 * @param property Entity's property
-	 * @param value property's values
-	 * @return Optional<R>
+	 * @param pageable Page request
+	 * @param strategy How deep references are read, null for the fields' own
+	 * @return Page<R>
 	 */
-	public Optional<R> findByPropertyValue(String property, String value) {
-		R obj = null;
-		final String preffix = ontologyVariables.getPreffix();
-		String queryStr = String.format(
-			"SELECT ?subject WHERE { "
-			+ "?subject %s \"%s\" .\n"
-			+ " 	{ "
-			+ " 		{ ?subject rdf:type <" + classUri + "> } "
-			+ "			UNION "
-			+ "			{ ?o rdfs:subClassOf <" + classUri + "> } . { ?subject rdf:type ?o } "
-			+ " 	} . "
-			+ " }"
-			+ " GROUP BY ?subject",
-			preffix + property,
-			value
-		);
-		
-		queryStr = ontologyVariables.getPreffixes() + queryStr;
-		
-		Query query = QueryFactory.create(queryStr);
-		Model model = ontologyVariables.getModel();
-		try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-			ResultSet results = qexec.execSelect();
-		    
-		    if (results.hasNext()) {
-		    	QuerySolution soln = results.next();
-		    	Resource res = soln.getResource("subject");
-		    	obj = type.getDeclaredConstructor().newInstance();
-		    	mapToObject(obj, res, model);
-		    }
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+	public Page<R> find(Pageable pageable, FetchStrategy strategy) {
+		List<R> content = findRange(pageable, pageable.isPaged() ? pageable.getPageSize() : -1, strategy);
 		
-		model.close();
-		return Optional.ofNullable(obj);
+		return PageableExecutionUtils.getPage(content, pageable, this::count);
 	}
 	
-	public Optional<R> findOne(QueryParam ...params) {
-		String paramStr = "";
-		for (QueryParam param: params) {
-			paramStr += param.toString();
+	/**
+	 * Find a slice of entities base on class without counting all of them
+	 * 
+	 * @param pageable Page request
+	 * @return Slice<R>
+	 */
+	public Slice<R> findSlice(Pageable pageable) {
+		if (pageable.isUnpaged()) {
+			return new SliceImpl<>(findRange(pageable, -1, null), pageable, false);
 		}
 		
-		String queryStr = "SELECT ?subject " +
-				"WHERE {"
-				+ " 	{ "
-				+ " 		{ ?subject rdf:type <" + classUri + "> } "
-				+ "			UNION "
-				+ "			{ ?o rdfs:subClassOf <" + classUri + "> } . { ?subject rdf:type ?o } "
-				+ " 	} . "
-				+ paramStr
-				+ " } "
-				+ " GROUP BY ?subject";
-		queryStr = ontologyVariables.getPreffixes() + queryStr;
+		int size = pageable.getPageSize();
+		List<R> content = findRange(pageable, size + 1, null);
+		boolean hasNext = content.size() > size;
 		
-		Query query = QueryFactory.create(queryStr);
-		Model model = ontologyVariables.getModel();
-		R obj = null;
-		try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-			ResultSet results = qexec.execSelect();
-		    
-		    if (results.hasNext()) {
-		    	QuerySolution soln = results.next();
-		    	Resource res = soln.getResource("?subject");
-		    	obj = type.getDeclaredConstructor().newInstance();
-		    	mapToObject(obj, res, model);
-		    }
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		model.close();
-		return Optional.ofNullable(obj);
+		return new SliceImpl<>(hasNext ? content.subList(0, size) : content, pageable, hasNext);
 	}
 	
-	public List<R> query(QueryParam ...params) {
-		String paramStr = "";
-		for (QueryParam param: params) {
-			paramStr += param.toString();
-		}
-
-		String queryStr = "SELECT ?subject " +
-				"WHERE {"
-				+ " 	{ "
-				+ " 		{ ?subject rdf:type <" + classUri + "> } "
-				+ "			UNION "
-				+ "			{ ?o rdfs:subClassOf <" + classUri + "> } . { ?subject rdf:type ?o } "
-				+ " 	} ."
-				+ paramStr
-				+ " }"
-				+ " GROUP BY ?subject";
-		List<R> list = new ArrayList<>(); 
-		queryStr = ontologyVariables.getPreffixes() + queryStr;
+	/**
+	 * Entities following a uri in the order of the uris. The slice starts
+	 * after the last entity read rather than at an offset, so it does not
+	 * depend on the entities before it, which are filtered out instead of
+	 * being sorted and skipped
+	 * 
+	 * @param last Uri of the last entity read, empty for the first slice
+	 * @param size Entities in a slice
+	 * @return List<R>
+	 */
+	List<R> findAfterUri(String last, int size) {
+		// The cached shape is shared, the size is set on a copy
+		Query query = compile(" SELECT " + distinct() + "?subject WHERE { " + classPattern()
+				+ " FILTER(STR(?subject) > ?last) } ORDER BY STR(?subject)").cloneQuery();
+		query.setLimit(size);
 		
-		Query query = QueryFactory.create(queryStr);
-		Model model = ontologyVariables.getModel();
-		try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-			ResultSet results = qexec.execSelect();
-		    
-		    while (results.hasNext()) {
-		    	QuerySolution soln = results.next();
-		    	Resource res = soln.getResource("?subject");
-		    	R obj = type.getDeclaredConstructor().newInstance();
-		    	mapToObject(obj, res, model);
-		    	list.add(obj);
-		    }
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		model.close();
-		return list;
+		QuerySolutionMap binding = new QuerySolutionMap();
+		binding.add("last", ResourceFactory.createPlainLiteral(last.isEmpty() ? last : toUniqueUri(last)));
+		
+		return selectBound(query, binding, "subject");
 	}
 	
 	/**
-	 * Execute a SPARQL query
+	 * Stream all entities base on class, each entity is read from the model
+	 * when the stream reaches it. Writes wait until the stream is closed, so
+	 * it must be closed on the thread that opened it
 	 * 
+	 * @return Stream<R>
+	 */
+	public Stream<R> streamAll() {
+		return ontologyVariables.getModelStore().stream(model -> Iter.asStream(listMembers(model))
+				.map(res -> hydrate(res, model))
+				.filter(Objects::nonNull));
+	}
+	
+	/**
+	 * Uris of all entities base on class, without reading them
 	 * 
-	 * @param queryStr Query string
-	 * @return Corresponding List of specified type
+	 * @return List<String>
 	 */
-	public List<R> query(String queryStr) {
-		List<R> list = new ArrayList<>(); 
-		String words[] = queryStr.split("\\s+");
-		String subject = "?subject";
-		for (String word: words) {
-			if (word.startsWith("?")) {
-				subject = word;
-				break;
+	public List<String> findAllUris() {
+		return read(model -> {
+			List<String> uris = new ArrayList<>();
+			Iterator<Resource> members = listMembers(model);
+			while (members.hasNext()) {
+				Resource member = members.next();
+				if (member.isURIResource()) {
+					uris.add(member.getURI());
+				}
+			}
+			return uris;
+		});
+	}
+	
+	/**
+	 * Find entities base on their unique URIs, read in one batch
+	 * 
+	 * @param uriTags Entities' unique URIs
+	 * @return Entities that exist, in the order of the URIs
+	 */
+	public List<R> findAllByUriTag(Collection<String> uriTags) {
+		return read(model -> {
+			List<Resource> subjects = new ArrayList<>(uriTags.size());
+			for (String uriTag : uriTags) {
+				Resource res = model.getResource(toUniqueUri(uriTag));
+				if (isMember(res, model)) {
+					subjects.add(res);
+				}
+			}
+			return hydrateAll(subjects, model);
+		});
+	}
+	
+	private List<R> findRange(Pageable pageable, int limit, FetchStrategy strategy) {
+		StringBuilder optionals = new StringBuilder();
+		StringBuilder orderBy = new StringBuilder();
+		int index = 0;
+		for (Sort.Order order : pageable.getSort()) {
+			String var;
+			if (isNameProperty(order.getProperty())) {
+				var = "?subject";
+			} else {
+				var = "?sort" + index++;
+				optionals.append(" OPTIONAL { ?subject ").append(ontologyVariables.getPreffix())
+					.append(checkProperty(order.getProperty())).append(' ').append(var).append(" } ");
+			}
+			String key = order.isIgnoreCase() ? "LCASE(STR(" + var + "))" : var;
+			if (!var.equals("?subject")) {
+				// A multi valued property matches a subject once per value, it is sorted by its first value
+				key = (order.isAscending() ? "MIN(" : "MAX(") + key + ")";
 			}
+			orderBy.append(order.isAscending() ? " ASC(" : " DESC(").append(key).append(')');
 		}
-		queryStr = ontologyVariables.getPreffixes() + queryStr;
 		
-		Query query = QueryFactory.create(queryStr);
-		Model model = ontologyVariables.getModel();
-		try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-			ResultSet results = qexec.execSelect();
-		    
-		    while (results.hasNext()) {
-		    	QuerySolution soln = results.next();
-		    	Resource res = soln.getResource(subject);
-		    	R obj = type.getDeclaredConstructor().newInstance();
-		    	mapToObject(obj, res, model);
-		    	list.add(obj);
-		    }
-		} catch (Exception e) {
-			e.printStackTrace();
+		String queryStr = optionals.length() > 0
+				? " SELECT ?subject WHERE { " + classPattern() + optionals + " } GROUP BY ?subject ORDER BY" + orderBy
+				: " SELECT " + distinct() + "?subject WHERE { " + classPattern() + " }"
+						+ (orderBy.length() > 0 ? " ORDER BY" + orderBy : "");
+		
+		// The cached shape is shared, the page range is set on a copy
+		Query query = compile(queryStr).cloneQuery();
+		if (pageable.isPaged()) {
+			query.setOffset(pageable.getOffset());
 		}
-		model.close();
-		return list;
+		if (limit >= 0) {
+			query.setLimit(limit);
+		}
+		
+		return read(model -> {
+			List<Resource> subjects = new ArrayList<>();
+			try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
+				ResultSet results = qexec.execSelect();
+				while (results.hasNext()) {
+					subjects.add(results.next().getResource("subject"));
+				}
+			}
+			
+			return hydrateAll(subjects, model, strategy);
+		});
+	}
+	
+	private <T> T read(Function<Model, T> action) {
+		return ontologyVariables.getModelStore().read(action);
 	}
 	
 	/**
-	 * 
-	 * Remove an Entity
-	 * 
-	 * @param obj
+	 * Write to the model store, evicting what changed from the unit of work
 	 */
-	public void remove(R obj) {
-		OutputStream out = null;
-		Model model = ontologyVariables.getModel();
+	private ChangeSet write(Consumer<Model> action) {
+		IdentityMap identityMap = IdentityMap.current();
+		ChangeSet changes;
 		try {
-			Resource res = model.getResource(executor.invokeGetName(obj).toString());
-			res.removeProperties();
-
-			out = new FileOutputStream(ontologyVariables.getPath());
-			RDFDataMgr.write(out, model, Lang.RDFXML);
-		} catch (IllegalAccessException | InvocationTargetException e) {
-			throw new IllegalArgumentException("Object has illegal data");
-		} catch (FileNotFoundException e) {
-			throw new NullPointerException("File not found");
-		} finally {
-			if (out != null) {
-				try {
-					out.close();
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
+			changes = ontologyVariables.getModelStore().update(action);
+		} catch (RuntimeException e) {
+			// What the failed write left in the model is unknown
+			if (identityMap != null) {
+				identityMap.clear();
 			}
-			model.close();
+			throw e;
+		}
+		if (identityMap != null) {
+			identityMap.evict(changes);
 		}
+		return changes;
 	}
 	
 	/**
-	 * Remove an entity base on its unique URI
-	 * 
-	 * @param uri
+	 * The class and its subclasses, from the shared subclass index
 	 */
-	public void remove(String uri) {
-		Model model = ontologyVariables.getModel();
-		String baseUri = ontologyVariables.getBaseUri();
-		String uniqueUri;
-		if (uri.startsWith(baseUri)) {
-			uniqueUri = uri;
-		} else {
-			uniqueUri = baseUri + uri;
+	private List<Node> subclasses() {
+		return ontologyVariables.getModelStore().getSubclassIndex().closure(klass.asNode());
+	}
+	
+	/**
+	 * Members of the class and of its subclasses, each listed once
+	 */
+	private Iterator<Resource> listMembers(Model model) {
+		List<Node> classes = subclasses();
+		if (classes.size() == 1) {
+			return model.listSubjectsWithProperty(RDF.type, model.wrapAsResource(classes.get(0)));
 		}
 		
-		StmtIterator iter = model.getResource(uniqueUri).listProperties();
-		if (iter != null) {
-			model = model.remove(iter);
-			OutputStream out = null;
-			try {
-				out = new FileOutputStream(ontologyVariables.getPath());
-				RDFDataMgr.write(out, model, Lang.RDFXML);
-			} catch (FileNotFoundException e) {
-				e.printStackTrace();
-			} finally {
-				if (out != null) {
-					try {
-						out.close();
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
-				}
-			}
-		} else {
-			log.warn("Cannot find entity");
+		return Iter.iter(classes)
+				.flatMap(node -> (Iterator<Resource>) model.listSubjectsWithProperty(RDF.type, model.wrapAsResource(node)))
+				.distinct();
+	}
+	
+	/**
+	 * Graph pattern binding ?subject to the members of the class and of its subclasses
+	 */
+	private String classPattern() {
+		return classPattern("?subject");
+	}
+	
+	/**
+	 * Graph pattern binding a variable to the members of the class and of its subclasses
+	 */
+	String classPattern(String var) {
+		List<Node> classes = subclasses();
+		if (classes.size() == 1) {
+			return " " + var + " rdf:type <" + classUri + "> . ";
+		}
+		
+		StringBuilder sb = new StringBuilder(" VALUES " + var + "Type {");
+		for (Node node : classes) {
+			sb.append(" <").append(node.getURI()).append('>');
 		}
 		
-		model.close();
+		return sb.append(" } ").append(var).append(" rdf:type ").append(var).append("Type . ").toString();
 	}
 	
 	/**
-	 * <p>Check if a requested entity exists in database</p>
-	 * 
-	 * @param uriTag Entity's uri
-	 * @return	 <b>true</b> if exists, <b>false</b> if not exists
+	 * Parsed query, prefixed with the ontology prefixes and cached per repository
 	 */
-	public boolean exists(String uriTag) {
-		String baseUri = ontologyVariables.getBaseUri();
-		String uniqueUri;
-		if (uriTag.startsWith(baseUri)) {
-			uniqueUri = uriTag;
-		} else {
-			uniqueUri = baseUri + uriTag;
+	Query compile(String queryStr) {
+		checkPlans();
+		return planCache.get(ontologyVariables.getPreffixes() + queryStr);
+	}
+	
+	/**
+	 * Parse the fixed query shapes, and drop the cached queries, whenever the
+	 * class hierarchy they were built from changed
+	 */
+	private void checkPlans() {
+		SubclassIndex index = ontologyVariables.getModelStore().getSubclassIndex();
+		long version = index.getVersion();
+		if (index == planIndex && version == planVersion) {
+			return;
 		}
 		
-		String queryStr = ontologyVariables.getPreffixes()
-				+ " SELECT ?subject \r\n"
-				+ " WHERE {\r\n"
-				+ " 	{ "
-				+ " 		{ ?subject rdf:type <" + classUri + "> } "
-				+ "			UNION "
-				+ "			{ ?o rdfs:subClassOf <" + classUri + "> } . { ?subject rdf:type ?o } "
-				+ " 	} . "
-				+ " 	FILTER (?subject  = <" + uniqueUri + ">) \r\n"
-				+ " }"
-				+ " GROUP BY ?subject";
-		
-		Query query = QueryFactory.create(queryStr);
-		Model model = ontologyVariables.getModel();
-		try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-			ResultSet results = qexec.execSelect();
-		    
-		    return results.hasNext();
-		} catch (Exception e) {
-			e.printStackTrace();
-		} finally {
-			model.close();
+		synchronized (planCache) {
+			if (index != planIndex || version != planVersion) {
+				planCache.clear();
+				propertyValueQuery = QueryFactory.create(ontologyVariables.getPreffixes()
+						+ " SELECT ?subject WHERE { ?subject ?property ?value . " + classPattern() + " } LIMIT 1");
+				propertyValueQuery.setResultVars();
+				planVersion = version;
+				planIndex = index;
+				planGeneration++;
+			}
 		}
-
-		model.close();
-		return false;
 	}
 	
 	/**
-	 * <p>Check if a requested entity exists in database</p>
+	 * Changes whenever the cached queries are dropped, queries kept outside of
+	 * the plan cache have to be parsed again then
+	 */
+	long planGeneration() {
+		checkPlans();
+		return planGeneration;
+	}
+	
+	/**
+	 * Cached queries of this repository
 	 * 
-	 * @param params Query parameters
-	 * @return	 <b>true</b> if exists, <b>false</b> if not exists
+	 * @return QueryPlanCache
 	 */
-	public boolean exists(QueryParam ...params) {
-		String queryparams = " ";
-		Model model = ontologyVariables.getModel();
-		for (QueryParam param : params) {
-			queryparams += param.toString();
+	public QueryPlanCache getQueryPlanCache() {
+		return planCache;
+	}
+	
+	/**
+	 * Cached results of this repository's queries
+	 * 
+	 * @return QueryResultCache, null when {@code queryResultCacheSize} is not positive
+	 */
+	public QueryResultCache getQueryResultCache() {
+		return resultCache;
+	}
+	
+	/**
+	 * Entities of the subjects a query selects. With a result cache, the
+	 * subjects selected on the same model version are reused
+	 * 
+	 * @param key Normalized query
+	 * @param select Runs the query
+	 * @return Entities, in the order of the subjects
+	 */
+	private List<R> selectCached(String key, Function<Model, List<Resource>> select) {
+		if (resultCache == null) {
+			return read(model -> hydrateAll(select.apply(model), model));
 		}
 		
-		String queryStr = ontologyVariables.getPreffixes()
-				+ " SELECT ?subject \r\n"
-				+ " WHERE {\r\n"
-				+ " 	{ "
-				+ " 		{ ?subject rdf:type <" + classUri + "> } "
-				+ "			UNION "
-				+ "			{ ?o rdfs:subClassOf <" + classUri + "> } . { ?subject rdf:type ?o } "
-				+ " 	} . "
-				+ queryparams
-				+ " }"
-				+ " GROUP BY ?subject";
-		
-		Query query = QueryFactory.create(queryStr);
-		try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
-			ResultSet results = qexec.execSelect();
-		    
-		    return results.hasNext();
-		} catch (Exception e) {
-			e.printStackTrace();
-		} finally {
-			model.close();
+		long version = ontologyVariables.getModelStore().getVersion();
+		List<String> uris = resultCache.getSubjects(key, version);
+		if (uris != null) {
+			return read(model -> hydrateAll(toResources(uris, model), model));
 		}
-
-		model.close();
-		return false;
+		
+		return read(model -> {
+			List<Resource> subjects = select.apply(model);
+			List<String> selected = toUris(subjects);
+			if (selected != null) {
+				resultCache.putSubjects(key, version, selected);
+			}
+			return hydrateAll(subjects, model);
+		});
 	}
 	
-	public Map<String, List<R>> groupBy(String property) {
-		Map<String, List<R>> group = new HashMap<>();
-		try {
-			List<R> list = this.find();
-			IModelExecutor mapper = modelManager.getExecutor(type);
-			Field field = type.getDeclaredField(property);
-			if (field.getType() == List.class) {
-				throw new IllegalArgumentException();
+	private static List<Resource> toResources(List<String> uris, Model model) {
+		List<Resource> resources = new ArrayList<>(uris.size());
+		for (String uri : uris) {
+			resources.add(model.getResource(uri));
+		}
+		
+		return resources;
+	}
+	
+	/**
+	 * Uris of selected subjects, null when one of them has none
+	 */
+	private static List<String> toUris(List<Resource> subjects) {
+		List<String> uris = new ArrayList<>(subjects.size());
+		for (Resource subject : subjects) {
+			if (subject == null) {
+				continue;
 			}
-			
-			for (R obj: list) {
-				String fieldValue;
-				try {
-					if (field.getType().isAnnotationPresent(OntologyObject.class)) {
-						IModelExecutor subMapper = modelManager.getExecutor(field.getType());
-						fieldValue = String.valueOf(subMapper.invokeGetName(mapper.invokeGetter(field, obj)));
-					} else {
-						fieldValue = String.valueOf(mapper.invokeGetter(field, obj));
-					}
-				} catch (IllegalAccessException | InvocationTargetException e) {
-					fieldValue = "no_category";
+			if (!subject.isURIResource()) {
+				return null;
+			}
+			uris.add(subject.getURI());
+		}
+		
+		return uris;
+	}
+	
+	/**
+	 * A subject typed with several classes of the closure is matched once per class
+	 */
+	private String distinct() {
+		return subclasses().size() > 1 ? "DISTINCT " : "";
+	}
+	
+	/**
+	 * Entities selected by a query with initial bindings
+	 */
+	List<R> selectBound(Query query, QuerySolutionMap binding, String var) {
+		return read(model -> {
+			List<Resource> subjects = new ArrayList<>();
+			try (QueryExecution qexec = QueryExecutionFactory.create(query, model, binding)) {
+				ResultSet results = qexec.execSelect();
+				while (results.hasNext()) {
+					subjects.add(results.next().getResource(var));
 				}
+			}
+			
+			return hydrateAll(subjects, model);
+		});
+	}
+	
+	/**
+	 * First value of a query with initial bindings, a count for instance
+	 */
+	long countBound(Query query, QuerySolutionMap binding, String var) {
+		return read(model -> {
+			try (QueryExecution qexec = QueryExecutionFactory.create(query, model, binding)) {
+				ResultSet results = qexec.execSelect();
 				
-				if (!group.containsKey(fieldValue)) {
-					group.put(fieldValue, new ArrayList<>());
-				}
-				group.get(fieldValue).add(obj);
+				return results.hasNext() ? results.next().getLiteral(var).getLong() : 0L;
+			}
+		});
+	}
+	
+	boolean askBound(Query query, QuerySolutionMap binding) {
+		return read(model -> {
+			try (QueryExecution qexec = QueryExecutionFactory.create(query, model, binding)) {
+				return qexec.execAsk();
+			}
+		});
+	}
+	
+	/**
+	 * Build the objects of several resources in one batch
+	 */
+	private List<R> hydrateAll(List<Resource> resources, Model model) {
+		return hydrateAll(resources, model, null);
+	}
+	
+	private List<R> hydrateAll(List<Resource> resources, Model model, FetchStrategy strategy) {
+		return new BatchHydrator(model, ontologyVariables, strategy).hydrate(resources, type);
+	}
+	
+	private R hydrate(Resource res, Model model) {
+		return hydrate(res, model, null);
+	}
+	
+	private R hydrate(Resource res, Model model, FetchStrategy strategy) {
+		return new BatchHydrator(model, ontologyVariables, strategy).hydrate(res, type);
+	}
+	
+	/**
+	 * Build the object of a resource read by uri, through the entity cache
+	 * when there is one and no unit of work is open
+	 */
+	private R hydrateCached(Resource res, Model model, FetchStrategy strategy) {
+		EntityCache cache = ontologyVariables.getEntityCache();
+		if (cache == null || !res.isURIResource() || IdentityMap.current() != null) {
+			return hydrate(res, model, strategy);
+		}
+		
+		R obj = cache.get(type, res.getURI(), strategy);
+		if (obj != null) {
+			return obj;
+		}
+		
+		long generation = cache.getGeneration();
+		long start = System.nanoTime();
+		BatchHydrator hydrator = new BatchHydrator(model, ontologyVariables, strategy);
+		obj = hydrator.hydrate(res, type);
+		if (obj != null && !hydrator.hasLazyReferences()) {
+			cache.put(type, res.getURI(), strategy, obj, hydrator.getScanned(), generation, System.nanoTime() - start);
+		}
+		
+		return obj;
+	}
+	
+	private boolean isNameProperty(String property) {
+		return modelManager.getExecutor(type).getNameField().getName().equals(property);
+	}
+	
+	String toUniqueUri(String uriTag) {
+		String baseUri = ontologyVariables.getBaseUri();
+		
+		return uriTag.startsWith(baseUri) ? uriTag : baseUri + uriTag;
+	}
+	
+	/**
+	 * Check the graph's rdf:type index directly instead of running a query
+	 */
+	private boolean isMember(Resource res, Model model) {
+		Graph graph = model.getGraph();
+		Node subject = res.asNode();
+		for (Node node : subclasses()) {
+			if (graph.contains(subject, RDF.type.asNode(), node)) {
+				return true;
 			}
+		}
+		
+		return false;
+	}
+	
+	private String checkProperty(String property) {
+		if (modelManager.getPlan(type, ontologyVariables.getBaseUri()).get(property) == null) {
+			throw new IllegalArgumentException(String.format("No property %s found for type %s", property, type.getSimpleName()));
+		}
+		
+		return property;
+	}
+	
+	/**
+	 * 
+	 * Find an entity base on its unique URI
+	 * 
+	 * @param uriTag The entity's unique URI
+	 * @return Optional<R>
+	 */
+	public Optional<R> findByUriTag(String uriTag) {
+		return findByUriTag(uriTag, null);
+	}
+	
+	/**
+	 * Find an entity base on its unique URI, reading references with a fetch strategy
+	 * 
+	 * @param uriTag The entity's unique URI
+	 * @param strategy How deep references are read, null for the fields' own
+	 * @return Optional<R>
+	 */
+	public Optional<R> findByUriTag(String uriTag, FetchStrategy strategy) {
+		return read(model -> {
+			Resource res = model.getResource(toUniqueUri(uriTag));
 			
-			return group;
-		} catch (NoSuchFieldException e) {
-			log.info("Field {} not found for grouping", property);
+			return isMember(res, model) ? Optional.ofNullable(hydrateCached(res, model, strategy)) : Optional.empty();
+		});
+	}
+	
+	/**
+	 * 
+	 * Find an entity base on its property and value
+	 * 
+	 * @param property Entity's property
+	 * @param value property's values
+	 * @return Optional<R>
+	 */
+	public Optional<R> findByPropertyValue(String property, String value) {
+		checkPlans();
+		
+		return read(model -> {
+			R obj = null;
+			QuerySolutionMap binding = new QuerySolutionMap();
+			binding.add("property", model.getProperty(ontologyVariables.getBaseUri() + property));
+			binding.add("value", model.createLiteral(value));
+			try (QueryExecution qexec = QueryExecutionFactory.create(propertyValueQuery, model, binding)) {
+				ResultSet results = qexec.execSelect();
+			    
+			    if (results.hasNext()) {
+			    	QuerySolution soln = results.next();
+			    	obj = hydrateCached(soln.getResource("subject"), model, null);
+			    }
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
 			
-			return new HashMap<>();
-		} catch (IllegalArgumentException e) {
-			log.info("Cannot group field type of List");
+			return Optional.ofNullable(obj);
+		});
+	}
+	
+	public Optional<R> findOne(QueryParam ...params) {
+		String paramStr = "";
+		for (QueryParam param: params) {
+			paramStr += param.toString();
+		}
+		
+		String queryStr = "SELECT ?subject " +
+				"WHERE {"
+				+ classPattern()
+				+ paramStr
+				+ " } "
+				+ " LIMIT 1";
+		Query query = compile(queryStr);
+		return read(model -> {
+			R obj = null;
+			try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
+				ResultSet results = qexec.execSelect();
+			    
+			    if (results.hasNext()) {
+			    	QuerySolution soln = results.next();
+			    	obj = hydrateCached(soln.getResource("?subject"), model, null);
+			    }
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			return Optional.ofNullable(obj);
+		});
+	}
+	
+	public List<R> query(QueryParam ...params) {
+		String paramStr = "";
+		for (QueryParam param: params) {
+			paramStr += param.toString();
+		}
+
+		// Parameters may match a subject several times
+		String queryStr = "SELECT DISTINCT ?subject " +
+				"WHERE {"
+				+ classPattern()
+				+ paramStr
+				+ " }";
+		Query query = compile(queryStr);
+		return selectCached(query.toString(), model -> {
+			List<Resource> subjects = new ArrayList<>();
+			try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
+				ResultSet results = qexec.execSelect();
+			    
+			    while (results.hasNext()) {
+			    	QuerySolution soln = results.next();
+			    	subjects.add(soln.getResource("?subject"));
+			    }
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			return subjects;
+		});
+	}
+	
+	/**
+	 * Query entities base on class with the conditions of a container,
+	 * built as SPARQL algebra by a {@link QueryParser}
+	 * 
+	 * @param queryContainer Conditions
+	 * @return Corresponding List of specified type
+	 */
+	public List<R> query(QueryContainer queryContainer) {
+		Query conditions = new QueryParser(ontologyVariables).toQuery(queryContainer);
+		
+		return query("SELECT DISTINCT ?subject WHERE { " + classPattern() + conditions.getQueryPattern() + " }");
+	}
+	
+	/**
+	 * Execute a SPARQL query
+	 * 
+	 * 
+	 * @param queryStr Query string
+	 * @return Corresponding List of specified type
+	 */
+	public List<R> query(String queryStr) {
+		String words[] = queryStr.split("\\s+");
+		String selected = "?subject";
+		for (String word: words) {
+			if (word.startsWith("?")) {
+				selected = word;
+				break;
+			}
+		}
+		String subject = selected;
+		Query query = compile(queryStr);
+		// Same query, formatted the same way, whatever its spacing
+		return selectCached(subject + " " + query, model -> {
+			List<Resource> subjects = new ArrayList<>();
+			try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
+				ResultSet results = qexec.execSelect();
+			    
+			    while (results.hasNext()) {
+			    	QuerySolution soln = results.next();
+			    	subjects.add(soln.getResource(subject));
+			    }
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			return subjects;
+		});
+	}
+	
+	/**
+	 * 
+	 * Remove an Entity
+	 * 
+	 * @param obj
+	 */
+	public void remove(R obj) {
+		String uri = getUri(obj);
+		write(model -> applyRemove(uri, model));
+	}
+	
+	/**
+	 * Remove an entity base on its unique URI
+	 * 
+	 * @param uri
+	 */
+	public void remove(String uri) {
+		write(model -> applyRemove(uri, model));
+	}
+	
+	/**
+	 * Remove entities in a single write
+	 * 
+	 * @param objs Entities to remove
+	 * @return Throughput of the batch
+	 */
+	public BatchResult removeAll(Iterable<R> objs) {
+		List<String> uris = new ArrayList<>();
+		for (R obj : objs) {
+			uris.add(getUri(obj));
+		}
+		
+		return removeAll(uris);
+	}
+	
+	/**
+	 * Remove entities base on their unique URIs in a single write
+	 * 
+	 * @param uris Entities' URIs
+	 * @return Throughput of the batch
+	 */
+	public BatchResult removeAll(Collection<String> uris) {
+		long start = System.nanoTime();
+		ChangeSet changes = write(model -> {
+			for (String uri : uris) {
+				applyRemove(uri, model);
+			}
+		});
+		
+		BatchResult result = new BatchResult(uris.size(), changes, System.nanoTime() - start);
+		log.info("removeAll {}: {}", type.getSimpleName(), result);
+		return result;
+	}
+	
+	String getUri(R obj) {
+		try {
+			return executor.invokeGetName(obj).toString();
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new IllegalArgumentException("Object has illegal data");
+		}
+	}
+	
+	private void applyRemove(String uri, Model model) {
+		String uniqueUri = toUniqueUri(uri);
+		Resource res = model.getResource(uniqueUri);
+		if (model.contains(res, null)) {
+			model.removeAll(res, null, null);
+		} else {
+			log.warn("Cannot find entity {}", uniqueUri);
+		}
+	}
+	
+	/**
+	 * Count entities base on class through the rdf:type index, the count is
+	 * kept until the next write
+	 * 
+	 * @return Number of entities
+	 */
+	public long count() {
+		long version = ontologyVariables.getModelStore().getVersion();
+		long[] counted = memberCount;
+		if (counted != null && counted[0] == version) {
+			return counted[1];
+		}
+		
+		long count = read(model -> Iter.count(listMembers(model)));
+		memberCount = new long[] { version, count };
+		return count;
+	}
+	
+	/**
+	 * Count entities matching query parameters with a COUNT(DISTINCT), without reading them
+	 * 
+	 * @param params Query parameters
+	 * @return Number of entities
+	 */
+	public long count(QueryParam ...params) {
+		if (params.length == 0) {
+			return count();
+		}
+		
+		String paramStr = "";
+		for (QueryParam param : params) {
+			paramStr += param.toString();
+		}
+		
+		String queryStr = "SELECT (COUNT(DISTINCT ?subject) AS ?count) "
+				+ "WHERE {"
+				+ classPattern()
+				+ paramStr
+				+ " }";
+		Query query = compile(queryStr);
+		return read(model -> {
+			try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
+				ResultSet results = qexec.execSelect();
+				
+				return results.hasNext() ? results.next().getLiteral("count").getLong() : 0L;
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
 			
+			return 0L;
+		});
+	}
+	
+	/**
+	 * Check if any of the entities exists, probing the rdf:type index
+	 * 
+	 * @param uriTags Entities' uris
+	 * @return <b>true</b> if one exists, <b>false</b> if none exists
+	 */
+	public boolean existsAny(String ...uriTags) {
+		return existsAny(Arrays.asList(uriTags));
+	}
+	
+	/**
+	 * Check if any of the entities exists, probing the rdf:type index
+	 * 
+	 * @param uriTags Entities' uris
+	 * @return <b>true</b> if one exists, <b>false</b> if none exists
+	 */
+	public boolean existsAny(Collection<String> uriTags) {
+		return read(model -> {
+			for (String uriTag : uriTags) {
+				if (isMember(model.getResource(toUniqueUri(uriTag)), model)) {
+					return true;
+				}
+			}
+			
+			return false;
+		});
+	}
+	
+	/**
+	 * <p>Check if a requested entity exists in database</p>
+	 * 
+	 * @param uriTag Entity's uri
+	 * @return	 <b>true</b> if exists, <b>false</b> if not exists
+	 */
+	public boolean exists(String uriTag) {
+		return read(model -> isMember(model.getResource(toUniqueUri(uriTag)), model));
+	}
+	
+	/**
+	 * <p>Check if a requested entity exists in database</p>
+	 * 
+	 * @param params Query parameters
+	 * @return	 <b>true</b> if exists, <b>false</b> if not exists
+	 */
+	public boolean exists(QueryParam ...params) {
+		String queryparams = " ";
+		for (QueryParam param : params) {
+			queryparams += param.toString();
+		}
+		
+		String queryStr = " ASK \r\n"
+				+ " WHERE {\r\n"
+				+ classPattern()
+				+ queryparams
+				+ " }";
+		
+		Query query = compile(queryStr);
+		return read(model -> {
+			try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
+				return qexec.execAsk();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+
+			return false;
+		});
+	}
+	
+	/**
+	 * Group entities by the value of a property, read in one batch
+	 * 
+	 * @param property Entity's property, a reference or a scalar
+	 * @return Entities by value, the value being a referenced entity's uri
+	 */
+	public Map<String, List<R>> groupBy(String property) {
+		Map<String, List<String>> groups = groupSubjects(property);
+		List<String> uris = new ArrayList<>();
+		for (List<String> subjects : groups.values()) {
+			uris.addAll(subjects);
+		}
+		Map<String, R> entities = hydrateByUri(uris);
+		
+		Map<String, List<R>> group = new HashMap<>();
+		for (Map.Entry<String, List<String>> entry : groups.entrySet()) {
+			group.put(entry.getKey(), collect(entry.getValue(), entities));
+		}
+		
+		return group;
+	}
+	
+	/**
+	 * Group entities by the value of a property, reading one page of each group
+	 * 
+	 * @param property Entity's property, a reference or a scalar
+	 * @param pageable Page read in every group
+	 * @return Page of entities by value
+	 */
+	public Map<String, Page<R>> groupBy(String property, Pageable pageable) {
+		Map<String, List<String>> groups = groupSubjects(property);
+		Map<String, List<String>> pages = new HashMap<>();
+		List<String> uris = new ArrayList<>();
+		for (Map.Entry<String, List<String>> entry : groups.entrySet()) {
+			List<String> subjects = entry.getValue();
+			List<String> page = subjects;
+			if (pageable.isPaged()) {
+				int from = (int) Math.min(pageable.getOffset(), subjects.size());
+				page = subjects.subList(from, Math.min(from + pageable.getPageSize(), subjects.size()));
+			}
+			pages.put(entry.getKey(), page);
+			uris.addAll(page);
+		}
+		Map<String, R> entities = hydrateByUri(uris);
+		
+		Map<String, Page<R>> group = new HashMap<>();
+		for (Map.Entry<String, List<String>> entry : pages.entrySet()) {
+			int total = groups.get(entry.getKey()).size();
+			group.put(entry.getKey(), PageableExecutionUtils.getPage(collect(entry.getValue(), entities), pageable, () -> total));
+		}
+		
+		return group;
+	}
+	
+	/**
+	 * Count entities by the value of a property, without reading them
+	 * 
+	 * @param property Entity's property, a reference or a scalar
+	 * @return Number of entities by value
+	 */
+	public Map<String, Long> groupCount(String property) {
+		Property predicate = groupProperty(property);
+		if (predicate == null) {
 			return new HashMap<>();
 		}
+		
+		return read(model -> {
+			Map<String, Long> counts = new HashMap<>();
+			scanGroups(predicate, model, (value, subject) -> counts.merge(value, 1L, Long::sum));
+			return counts;
+		});
+	}
+	
+	/**
+	 * Uris of the entities by the value of a property, without reading them
+	 * 
+	 * @param property Entity's property, a reference or a scalar
+	 * @return Unmodifiable subject uris by value
+	 */
+	public Map<String, List<String>> groupSubjects(String property) {
+		Property predicate = groupProperty(property);
+		if (predicate == null) {
+			return Collections.emptyMap();
+		}
+		
+		String key = "GROUP BY <" + predicate.getURI() + "> " + classUri;
+		long version = ontologyVariables.getModelStore().getVersion();
+		Map<String, List<String>> cached = resultCache == null ? null : resultCache.getGroups(key, version);
+		if (cached != null) {
+			return cached;
+		}
+		
+		Map<String, List<String>> groups = read(model -> {
+			Map<String, List<String>> subjects = new LinkedHashMap<>();
+			scanGroups(predicate, model, (value, subject) -> {
+				if (subject.isURI()) {
+					subjects.computeIfAbsent(value, k -> new ArrayList<>()).add(subject.getURI());
+				}
+			});
+			return subjects;
+		});
+		
+		return resultCache != null ? resultCache.putGroups(key, version, groups) : QueryResultCache.immutableGroups(groups);
+	}
+	
+	/**
+	 * Walk the members of the class through the rdf:type index and probe the
+	 * property's first value on each, the value an entity would be read with
+	 */
+	private void scanGroups(Property predicate, Model model, BiConsumer<String, Node> action) {
+		Graph graph = model.getGraph();
+		Node property = predicate.asNode();
+		Iterator<Resource> members = listMembers(model);
+		while (members.hasNext()) {
+			Node subject = members.next().asNode();
+			ExtendedIterator<Triple> values = graph.find(subject, property, Node.ANY);
+			try {
+				action.accept(groupKey(values.hasNext() ? values.next().getObject() : null), subject);
+			} finally {
+				values.close();
+			}
+		}
+	}
+	
+	/**
+	 * Property a grouping reads, null when the entity cannot be grouped by it
+	 */
+	private Property groupProperty(String property) {
+		PropertyMapping mapping = modelManager.getPlan(type, ontologyVariables.getBaseUri()).get(property);
+		if (mapping == null) {
+			log.info("Field {} not found for grouping", property);
+			return null;
+		}
+		if (mapping.getKind() == MappingPlan.Kind.LIST) {
+			log.info("Cannot group field type of List");
+			return null;
+		}
+		
+		return mapping.getProperty();
+	}
+	
+	/**
+	 * Group of a value, its uri or lexical form, "null" when there is none
+	 */
+	private static String groupKey(Node value) {
+		if (value == null) {
+			return String.valueOf((Object) null);
+		}
+		
+		return value.isLiteral() ? value.getLiteralLexicalForm() : value.isURI() ? value.getURI() : value.toString();
+	}
+	
+	/**
+	 * Entities of subject uris, read in one batch and keyed by uri
+	 */
+	private Map<String, R> hydrateByUri(List<String> uris) {
+		Map<String, R> entities = new HashMap<>();
+		for (R obj : read(model -> hydrateAll(toResources(uris, model), model))) {
+			entities.put(getUri(obj), obj);
+		}
+		
+		return entities;
+	}
+	
+	private List<R> collect(List<String> uris, Map<String, R> entities) {
+		List<R> members = new ArrayList<>(uris.size());
+		for (String uri : uris) {
+			R obj = entities.get(uri);
+			if (obj != null) {
+				members.add(obj);
+			}
+		}
+		
+		return members;
+	}
+	
+	/**
+	 * Find all entities on the {@link OntologyVariables#getAsyncExecutor() async executor}
+	 * 
+	 * @return Entities, once read
+	 */
+	public CompletableFuture<List<R>> findAsync() {
+		return async(this::find);
+	}
+	
+	/**
+	 * Find a page of entities on the {@link OntologyVariables#getAsyncExecutor() async executor}
+	 * 
+	 * @param pageable Page request
+	 * @return Page, once read
+	 */
+	public CompletableFuture<Page<R>> findAsync(Pageable pageable) {
+		return async(() -> find(pageable));
+	}
+	
+	/**
+	 * Find an entity base on its unique URI on the {@link OntologyVariables#getAsyncExecutor() async executor}
+	 * 
+	 * @param uriTag The entity's unique URI
+	 * @return Entity, once read
+	 */
+	public CompletableFuture<Optional<R>> findByUriTagAsync(String uriTag) {
+		return async(() -> findByUriTag(uriTag));
+	}
+	
+	/**
+	 * Query entities on the {@link OntologyVariables#getAsyncExecutor() async executor}
+	 * 
+	 * @param params Query parameters
+	 * @return Entities, once read
+	 */
+	public CompletableFuture<List<R>> queryAsync(QueryParam ...params) {
+		return async(() -> query(params));
+	}
+	
+	/**
+	 * Execute a SPARQL query on the {@link OntologyVariables#getAsyncExecutor() async executor}
+	 * 
+	 * @param queryStr Query string
+	 * @return Entities, once read
+	 */
+	public CompletableFuture<List<R>> queryAsync(String queryStr) {
+		return async(() -> query(queryStr));
+	}
+	
+	/**
+	 * Count entities on the {@link OntologyVariables#getAsyncExecutor() async executor}
+	 * 
+	 * @return Number of entities, once counted
+	 */
+	public CompletableFuture<Long> countAsync() {
+		return async(() -> count());
+	}
+	
+	/**
+	 * Save an entity on the {@link OntologyVariables#getAsyncExecutor() async executor}
+	 * 
+	 * @param obj Entity
+	 * @return Saved entity, once written
+	 */
+	public CompletableFuture<R> saveAsync(R obj) {
+		return async(() -> save(obj));
+	}
+	
+	/**
+	 * Save entities in a single write on the {@link OntologyVariables#getAsyncExecutor() async executor}
+	 * 
+	 * @param objs Entities
+	 * @return Throughput of the batch, once written
+	 */
+	public CompletableFuture<BatchResult> saveAllAsync(Iterable<R> objs) {
+		return async(() -> saveAll(objs));
+	}
+	
+	/**
+	 * Remove an entity on the {@link OntologyVariables#getAsyncExecutor() async executor}
+	 * 
+	 * @param obj Entity
+	 * @return Completed once removed
+	 */
+	public CompletableFuture<Void> removeAsync(R obj) {
+		return async(() -> {
+			remove(obj);
+			return null;
+		});
+	}
+	
+	/**
+	 * Remove entities in a single write on the {@link OntologyVariables#getAsyncExecutor() async executor}
+	 * 
+	 * @param objs Entities to remove
+	 * @return Throughput of the batch, once written
+	 */
+	public CompletableFuture<BatchResult> removeAllAsync(Iterable<R> objs) {
+		return async(() -> removeAll(objs));
+	}
+	
+	/**
+	 * Run on the {@link OntologyVariables#getAsyncExecutor() async executor}, a rejected call fails the returned future.
+	 * An IdentityMap open on the calling thread does not apply
+	 */
+	private <T> CompletableFuture<T> async(Supplier<T> action) {
+		try {
+			return CompletableFuture.supplyAsync(action, ontologyVariables.getAsyncExecutor());
+		} catch (RejectedExecutionException e) {
+			CompletableFuture<T> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(e);
+			return rejected;
+		}
 	}
 }
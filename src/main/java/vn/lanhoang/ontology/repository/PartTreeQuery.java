@@ -0,0 +1,298 @@
+package vn.lanhoang.ontology.repository;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyPath;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+
+import vn.lanhoang.ontology.ModelManager;
+import vn.lanhoang.ontology.mapping.MappingPlan;
+import vn.lanhoang.ontology.mapping.MappingPlan.PropertyMapping;
+
+/**
+ * Graph pattern of a query method derived from its name, such as
+ * {@code findByNameAndHasProgram}, {@code countByCredit} or
+ * {@code existsByHasProgramName}.
+ *
+ * <p>The name is parsed with Spring Data's {@link PartTree}, and every property
+ * is resolved to its predicate uri once. The entities are bound to
+ * {@code ?arg0}, parameter {@code n} to {@code ?arg<n+1>}. An equality is
+ * matched by the triple pattern itself, other comparisons by a filter, and
+ * each {@code Or} branch is a union member with its own class pattern.</p>
+ */
+final class PartTreeQuery {
+
+	static final String SELECT = "?arg0";
+	private static final String DOUBLE = "<http://www.w3.org/2001/XMLSchema#double>";
+
+	private final Method method;
+	private final String baseUri;
+	private final Class<?>[] parameterTypes;
+	private final boolean[] uris;
+	private final PartTree tree;
+	private final List<String> branches = new ArrayList<>();
+	private final StringBuilder sort = new StringBuilder();
+	private final StringBuilder order = new StringBuilder();
+	private StringBuilder where;
+	private int arguments;
+	private int variables;
+
+	/**
+	 * @param method Query method
+	 * @param entityType Entities of the repository
+	 * @param baseUri Base uri of the properties
+	 * @throws IllegalArgumentException When the name can not be translated
+	 */
+	PartTreeQuery(Method method, Class<?> entityType, String baseUri) {
+		this.method = method;
+		this.baseUri = baseUri;
+		this.parameterTypes = method.getParameterTypes();
+		this.uris = new boolean[parameterTypes.length];
+		this.tree = new PartTree(method.getName(), entityType);
+		if (tree.isDelete()) {
+			throw new IllegalArgumentException("deletes, which is not supported");
+		}
+
+		for (PartTree.OrPart orPart : tree) {
+			where = new StringBuilder();
+			for (Part part : orPart) {
+				part(part, entityType);
+			}
+			branches.add(where.toString());
+		}
+		if (arguments != parameterTypes.length) {
+			throw new IllegalArgumentException(String.format("has %d parameters, %d are expected", parameterTypes.length, arguments));
+		}
+
+		where = sort;
+		for (Sort.Order sortOrder : tree.getSort()) {
+			String var = variable();
+			where.append(" OPTIONAL {");
+			path(PropertyPath.from(sortOrder.getProperty(), entityType), entityType, SELECT, var);
+			where.append(" }");
+			order.append(sortOrder.isAscending() ? " ASC(" : " DESC(").append(var).append(')');
+		}
+	}
+
+	/**
+	 * @param classPattern Class pattern of {@code ?arg0}
+	 * @return Graph pattern
+	 */
+	String getWhere(String classPattern) {
+		if (branches.size() <= 1) {
+			return classPattern + (branches.isEmpty() ? "" : branches.get(0)) + sort;
+		}
+
+		StringBuilder union = new StringBuilder();
+		for (String branch : branches) {
+			union.append(union.length() == 0 ? " {" : " UNION {").append(classPattern).append(branch).append(" }");
+		}
+
+		return union.append(sort).toString();
+	}
+
+	/**
+	 * @return Order conditions, empty when the name has no {@code OrderBy}
+	 */
+	String getOrder() {
+		return order.toString();
+	}
+
+	/**
+	 * @return Entities returned, 0 without {@code First} or {@code Top}
+	 */
+	int getLimit() {
+		Integer max = tree.getMaxResults();
+		return max == null ? 0 : max;
+	}
+
+	boolean isCount() {
+		return tree.isCountProjection();
+	}
+
+	boolean isExists() {
+		return tree.isExistsProjection();
+	}
+
+	/**
+	 * @return Parameters bound to the uri of an entity rather than a literal
+	 */
+	boolean[] getUris() {
+		return uris;
+	}
+
+	private void part(Part part, Class<?> entityType) {
+		PropertyPath path = part.getProperty();
+		boolean ignoreCase = part.shouldIgnoreCase() != Part.IgnoreCaseType.NEVER;
+		String value = variable();
+		switch (part.getType()) {
+			case SIMPLE_PROPERTY:
+				if (ignoreCase) {
+					path(path, entityType, SELECT, value);
+					filter("LCASE(STR(%s)) = LCASE(STR(%s))", value, argument(path));
+				} else if (isName(path, entityType) && !path.hasNext()) {
+					filter("%s = %s", SELECT, argument(path));
+				} else {
+					// The parameter takes the place of the value so the index of the predicate is used
+					path(path, entityType, SELECT, argument(path));
+				}
+				break;
+			case NEGATING_SIMPLE_PROPERTY:
+				path(path, entityType, SELECT, value);
+				filter(ignoreCase ? "LCASE(STR(%s)) != LCASE(STR(%s))" : "%s != %s", value, argument(path));
+				break;
+			case GREATER_THAN:
+			case AFTER:
+				compare(path, entityType, value, ">");
+				break;
+			case GREATER_THAN_EQUAL:
+				compare(path, entityType, value, ">=");
+				break;
+			case LESS_THAN:
+			case BEFORE:
+				compare(path, entityType, value, "<");
+				break;
+			case LESS_THAN_EQUAL:
+				compare(path, entityType, value, "<=");
+				break;
+			case BETWEEN:
+				compare(path, entityType, value, ">=");
+				compare(null, entityType, value, "<=");
+				break;
+			case STARTING_WITH:
+				text(path, entityType, value, "STRSTARTS", ignoreCase, false);
+				break;
+			case ENDING_WITH:
+				text(path, entityType, value, "STRENDS", ignoreCase, false);
+				break;
+			case CONTAINING:
+				text(path, entityType, value, "CONTAINS", ignoreCase, false);
+				break;
+			case NOT_CONTAINING:
+				text(path, entityType, value, "CONTAINS", ignoreCase, true);
+				break;
+			case IS_NOT_NULL:
+				path(path, entityType, SELECT, value);
+				break;
+			case IS_NULL:
+				where.append(" FILTER NOT EXISTS {");
+				path(path, entityType, SELECT, value);
+				where.append(" }");
+				break;
+			case TRUE:
+			case FALSE:
+				path(path, entityType, SELECT, value);
+				filter("STR(%s) = \"%s\"", value, String.valueOf(part.getType() == Part.Type.TRUE));
+				break;
+			default:
+				throw new IllegalArgumentException(String.format("uses %s on %s, which is not supported",
+						part.getType(), path.toDotPath()));
+		}
+	}
+
+	/**
+	 * Compare as numbers when the parameter is a number, else as text. A null
+	 * path compares the value already matched with the next parameter
+	 */
+	private void compare(PropertyPath path, Class<?> entityType, String value, String operator) {
+		if (path != null) {
+			path(path, entityType, SELECT, value);
+		}
+
+		String argument = argument(null);
+		Class<?> parameterType = parameterTypes[arguments - 1];
+		if (Number.class.isAssignableFrom(parameterType) || (parameterType.isPrimitive() && parameterType != boolean.class && parameterType != char.class)) {
+			filter(DOUBLE + "(%s) " + operator + " " + DOUBLE + "(%s)", value, argument);
+		} else {
+			filter("STR(%s) " + operator + " STR(%s)", value, argument);
+		}
+	}
+
+	private void text(PropertyPath path, Class<?> entityType, String value, String function, boolean ignoreCase, boolean negate) {
+		path(path, entityType, SELECT, value);
+		String format = ignoreCase ? function + "(LCASE(STR(%s)), LCASE(STR(%s)))" : function + "(STR(%s), STR(%s))";
+		filter(negate ? "!" + format : format, value, argument(null));
+	}
+
+	/**
+	 * Triple patterns from a subject along a property path, the last object
+	 * being {@code value}. A path ending with the {@code @Name} field ends on
+	 * the entity itself
+	 */
+	private void path(PropertyPath path, Class<?> entityType, String subject, String value) {
+		Class<?> type = entityType;
+		String current = subject;
+		Iterator<PropertyPath> segments = path.iterator();
+		while (segments.hasNext()) {
+			PropertyPath segment = segments.next();
+			MappingPlan plan = ModelManager.instance().getPlan(type, baseUri);
+			if (plan.getNameField() != null && plan.getNameField().getName().equals(segment.getSegment()) && !segments.hasNext()) {
+				if (current.equals(subject)) {
+					where.append(" BIND (").append(subject).append(" AS ").append(value).append(')');
+				} else {
+					rename(current, value);
+				}
+				return;
+			}
+
+			PropertyMapping mapping = plan.get(segment.getSegment());
+			if (mapping == null) {
+				throw new IllegalArgumentException(String.format("uses %s, which is not a property of %s",
+						segment.getSegment(), type.getSimpleName()));
+			}
+
+			String object = segments.hasNext() ? variable() : value;
+			where.append(' ').append(current).append(" <").append(mapping.getProperty().getURI()).append("> ").append(object).append(" .");
+			current = object;
+			type = mapping.getTargetType() != null ? mapping.getTargetType() : mapping.getField().getType();
+		}
+	}
+
+	/**
+	 * The last object of a path on the {@code @Name} field is the value itself
+	 */
+	private void rename(String var, String value) {
+		int at = where.lastIndexOf(" " + var + " .");
+		where.replace(at + 1, at + 1 + var.length(), value);
+	}
+
+	private boolean isName(PropertyPath path, Class<?> entityType) {
+		MappingPlan plan = ModelManager.instance().getPlan(entityType, baseUri);
+		return plan.getNameField() != null && plan.getNameField().getName().equals(path.getSegment());
+	}
+
+	/**
+	 * Variable of the next parameter. A parameter compared with the
+	 * {@code @Name} field is bound to the uri of the entity
+	 */
+	private String argument(PropertyPath path) {
+		if (arguments >= parameterTypes.length) {
+			throw new IllegalArgumentException(String.format("has %d parameters, more are expected", parameterTypes.length));
+		}
+		if (path != null) {
+			PropertyPath leaf = path.getLeafProperty();
+			MappingPlan plan = ModelManager.instance().getPlan(leaf.getOwningType().getType(), baseUri);
+			uris[arguments] = plan.getNameField() != null && plan.getNameField().getName().equals(leaf.getSegment());
+		}
+
+		return "?arg" + (++arguments);
+	}
+
+	private String variable() {
+		return "?v" + (++variables);
+	}
+
+	private void filter(String format, String... vars) {
+		where.append(" FILTER (").append(String.format(format, (Object[]) vars)).append(')');
+	}
+
+	@Override
+	public String toString() {
+		return method.getName() + ":" + branches + sort + order;
+	}
+}
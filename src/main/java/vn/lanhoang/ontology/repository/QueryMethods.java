@@ -0,0 +1,378 @@
+package vn.lanhoang.ontology.repository;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.springframework.data.mapping.PropertyReferenceException;
+
+import vn.lanhoang.ontology.IModelExecutor;
+import vn.lanhoang.ontology.ModelManager;
+import vn.lanhoang.ontology.annotation.OntologyObject;
+import vn.lanhoang.ontology.annotation.SParam;
+import vn.lanhoang.ontology.annotation.SQuery;
+
+/**
+ * Implements interfaces of query methods on top of a repository, declared
+ * with {@link SQuery} or derived from their name.
+ *
+ * <pre>
+ * public interface SubjectQueries {
+ *     &#64;SQuery(where = "?arg0 t:hasProgram ?arg1 . ?arg0 t:credit ?arg2")
+ *     List&lt;Subject&gt; byProgram(Program program, &#64;SParam(index = 2) Double credit);
+ *
+ *     &#64;SQuery(where = "?arg0 t:name ?arg1")
+ *     boolean existsByName(String name);
+ *
+ *     List&lt;Subject&gt; findByNameAndHasProgram(String name, Program program);
+ *     long countByCreditGreaterThan(double credit);
+ * }
+ *
+ * SubjectQueries queries = QueryMethods.create(SubjectQueries.class, subjectRepository);
+ * </pre>
+ *
+ * <p>{@code select} is the variable bound to the repository's entities,
+ * {@code ?arg0} by default. Parameter {@code n} is bound to {@code ?arg<n+1>},
+ * or to {@code ?arg<index>} with {@link SParam}, through the query's initial
+ * bindings: entities as their uri, {@link RDFNode}s as they are, anything
+ * else as a literal of its text.</p>
+ *
+ * <p>A method without {@link SQuery} is parsed as a Spring Data derived query:
+ * {@code findBy}, {@code countBy}, {@code existsBy}, {@code First}/{@code Top}, {@code OrderBy} and nested
+ * properties such as {@code findByHasProgramName}.</p>
+ *
+ * <p>A method returns {@code List<R>}, {@code Optional<R>} or {@code R} for
+ * entities, {@code long} or {@code int} for a count and {@code boolean} for an
+ * existence check. Every method is checked and its query parsed when the
+ * interface is implemented and kept by the method until the class hierarchy
+ * changes, and results go through batch hydration.</p>
+ *
+ * <p>{@code default} methods are not queries, they run as written and may
+ * call the query methods.</p>
+ */
+public final class QueryMethods {
+
+	private static final Pattern ARG = Pattern.compile("\\?arg(\\d+)\\b");
+	private static final String COUNT = "count";
+
+	private enum Kind {
+		LIST, OPTIONAL, ENTITY, COUNT, EXISTS
+	}
+
+	private QueryMethods() {
+	}
+
+	/**
+	 * Implement an interface of {@link SQuery} methods
+	 *
+	 * @param queries Interface
+	 * @param repository Repository of the entities, initialized
+	 * @return Implementation
+	 * @throws IllegalStateException When a method or its query is not valid
+	 */
+	public static <T> T create(Class<T> queries, OntologyRepository<?> repository) {
+		if (!queries.isInterface()) {
+			throw new IllegalArgumentException(queries.getName() + " is not an interface");
+		}
+
+		Map<Method, QueryMethod> methods = new HashMap<>();
+		Map<Method, MethodHandle> defaults = new HashMap<>();
+		for (Method method : queries.getMethods()) {
+			if (method.getDeclaringClass() == Object.class || Modifier.isStatic(method.getModifiers())) {
+				continue;
+			}
+			if (method.isDefault()) {
+				defaults.put(method, defaultMethod(method));
+				continue;
+			}
+
+			QueryMethod queryMethod = new QueryMethod(method, repository);
+			queryMethod.compile();
+			methods.put(method, queryMethod);
+		}
+
+		InvocationHandler handler = (proxy, method, args) -> {
+			QueryMethod queryMethod = methods.get(method);
+			if (queryMethod != null) {
+				return queryMethod.invoke(args == null ? new Object[0] : args);
+			}
+			MethodHandle defaultMethod = defaults.get(method);
+			if (defaultMethod != null) {
+				return defaultMethod.bindTo(proxy).invokeWithArguments(args == null ? new Object[0] : args);
+			}
+
+			switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return queries.getName() + " on " + repository.getClass().getName();
+				default:
+					throw new UnsupportedOperationException(method.toString());
+			}
+		};
+
+		return queries.cast(Proxy.newProxyInstance(queries.getClassLoader(), new Class<?>[] { queries }, handler));
+	}
+
+	/**
+	 * Handle running the body of a default method, on Java 8 through the
+	 * private Lookup constructor, which privateLookupIn replaces from Java 9
+	 */
+	private static MethodHandle defaultMethod(Method method) {
+		Class<?> declaring = method.getDeclaringClass();
+		try {
+			MethodHandles.Lookup lookup;
+			try {
+				Method privateLookupIn = MethodHandles.class.getMethod("privateLookupIn", Class.class, MethodHandles.Lookup.class);
+				lookup = (MethodHandles.Lookup) privateLookupIn.invoke(null, declaring, MethodHandles.lookup());
+			} catch (NoSuchMethodException e) {
+				Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor(Class.class, int.class);
+				constructor.setAccessible(true);
+				lookup = constructor.newInstance(declaring, MethodHandles.Lookup.PRIVATE);
+			}
+
+			return lookup.unreflectSpecial(method, declaring);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new IllegalStateException(String.format("Default method %s.%s can not be called: %s",
+					declaring.getSimpleName(), method.getName(), e.getMessage()), e);
+		}
+	}
+
+	private static class QueryMethod {
+		private final Method method;
+		private final OntologyRepository<?> repository;
+		private final Kind kind;
+		private final String select;
+		private final String where;
+		private final PartTreeQuery derived;
+		private final String[] vars;
+		private final boolean[] uris;
+		private final String order;
+		private final int limit;
+		private volatile Plan plan;
+
+		QueryMethod(Method method, OntologyRepository<?> repository) {
+			this.method = method;
+			this.repository = repository;
+			this.kind = kind(method, repository.getEntityType());
+
+			SQuery query = method.getAnnotation(SQuery.class);
+			if (query == null) {
+				try {
+					this.derived = new PartTreeQuery(method, repository.getEntityType(), repository.getOntologyVariables().getBaseUri());
+				} catch (IllegalArgumentException | PropertyReferenceException e) {
+					throw invalid("has no @SQuery and can not be derived from its name: " + e.getMessage());
+				}
+				if (derived.isCount() != (kind == Kind.COUNT) || derived.isExists() != (kind == Kind.EXISTS)) {
+					throw invalid("returns " + method.getReturnType().getSimpleName() + ", which does not match its name");
+				}
+
+				this.select = PartTreeQuery.SELECT;
+				this.where = null;
+				this.order = derived.getOrder();
+				this.limit = derived.getLimit();
+				this.uris = derived.getUris();
+				this.vars = new String[uris.length];
+				for (int i = 0; i < vars.length; i++) {
+					vars[i] = "arg" + (i + 1);
+				}
+				return;
+			}
+
+			this.derived = null;
+			this.select = query.select().trim();
+			this.where = query.where();
+			this.order = "";
+			this.limit = 0;
+			if (!select.matches("\\?\\w+")) {
+				throw invalid("selects " + select + ", a variable is expected");
+			}
+
+			this.vars = new String[method.getParameterCount()];
+			this.uris = new boolean[vars.length];
+			Set<Integer> indexes = new HashSet<>();
+			Annotation[][] annotations = method.getParameterAnnotations();
+			for (int i = 0; i < vars.length; i++) {
+				int index = i + 1;
+				for (Annotation annotation : annotations[i]) {
+					if (annotation instanceof SParam && ((SParam) annotation).index() >= 0) {
+						index = ((SParam) annotation).index();
+					}
+				}
+				if (index == 0) {
+					throw invalid("binds a parameter to ?arg0, the selected entities");
+				}
+				if (!indexes.add(index)) {
+					throw invalid("binds ?arg" + index + " twice");
+				}
+				vars[i] = "arg" + index;
+			}
+
+			Matcher matcher = ARG.matcher(where);
+			while (matcher.find()) {
+				int index = Integer.parseInt(matcher.group(1));
+				if (index != 0 && !indexes.contains(index) && !select.equals(matcher.group())) {
+					throw invalid("uses ?arg" + index + " without a parameter bound to it");
+				}
+			}
+		}
+
+		/**
+		 * Parse the query now so that an invalid one fails on startup
+		 */
+		void compile() {
+			try {
+				query();
+			} catch (QueryParseException e) {
+				throw invalid("has an invalid query: " + e.getMessage());
+			}
+		}
+
+		/**
+		 * Query of the method, parsed again only when the class hierarchy it
+		 * was built from changed
+		 */
+		private Query query() {
+			long generation = repository.planGeneration();
+			Plan current = plan;
+			if (current == null || current.generation != generation) {
+				current = new Plan(generation, repository.compile(queryString()));
+				plan = current;
+			}
+
+			return current.query;
+		}
+
+		Object invoke(Object[] args) {
+			QuerySolutionMap binding = new QuerySolutionMap();
+			for (int i = 0; i < args.length; i++) {
+				binding.add(vars[i], toNode(i, args[i]));
+			}
+
+			Query query = query();
+			switch (kind) {
+				case LIST:
+					return repository.selectBound(query, binding, select);
+				case OPTIONAL:
+					return first(repository.selectBound(query, binding, select));
+				case ENTITY:
+					return first(repository.selectBound(query, binding, select)).orElse(null);
+				case COUNT:
+					long count = repository.countBound(query, binding, COUNT);
+					return method.getReturnType() == int.class || method.getReturnType() == Integer.class ? (Object) (int) count : (Object) count;
+				case EXISTS:
+					return repository.askBound(query, binding);
+				default:
+					throw new IllegalStateException(kind.name());
+			}
+		}
+
+		private String queryString() {
+			String classPattern = repository.classPattern(select);
+			String pattern = " WHERE {" + (derived != null ? derived.getWhere(classPattern) : classPattern + where) + " }";
+			switch (kind) {
+				case COUNT:
+					return "SELECT (COUNT(DISTINCT " + select + ") AS ?" + COUNT + ")" + pattern;
+				case EXISTS:
+					return "ASK" + pattern;
+				case LIST:
+					return "SELECT DISTINCT " + select + pattern + modifiers(limit);
+				default:
+					return "SELECT DISTINCT " + select + pattern + modifiers(1);
+			}
+		}
+
+		private String modifiers(int limit) {
+			String modifiers = order.isEmpty() ? "" : " ORDER BY" + order;
+			return limit > 0 ? modifiers + " LIMIT " + limit : modifiers;
+		}
+
+		private RDFNode toNode(int index, Object value) {
+			if (value == null) {
+				throw new IllegalArgumentException(String.format("Parameter %d of %s is null", index, method.getName()));
+			}
+			if (value instanceof RDFNode) {
+				return (RDFNode) value;
+			}
+			if (uris[index] && value instanceof String) {
+				return ResourceFactory.createResource(repository.toUniqueUri((String) value));
+			}
+			if (value.getClass().isAnnotationPresent(OntologyObject.class)) {
+				IModelExecutor executor = ModelManager.instance().getExecutor(value.getClass());
+				try {
+					return ResourceFactory.createResource(repository.toUniqueUri(String.valueOf(executor.invokeGetName(value))));
+				} catch (ReflectiveOperationException e) {
+					throw new IllegalArgumentException("Object has illegal data");
+				}
+			}
+
+			return ResourceFactory.createPlainLiteral(value.toString());
+		}
+
+		private static Optional<?> first(List<?> entities) {
+			return entities.isEmpty() ? Optional.empty() : Optional.ofNullable(entities.get(0));
+		}
+
+		private static Kind kind(Method method, Class<?> entityType) {
+			Class<?> returnType = method.getReturnType();
+			if (returnType == List.class || returnType == Optional.class) {
+				Type generic = method.getGenericReturnType();
+				if (!(generic instanceof ParameterizedType)
+						|| ((ParameterizedType) generic).getActualTypeArguments()[0] != entityType) {
+					throw new IllegalStateException(String.format("Method %s.%s must return %s<%s>",
+							method.getDeclaringClass().getSimpleName(), method.getName(), returnType.getSimpleName(), entityType.getSimpleName()));
+				}
+				return returnType == List.class ? Kind.LIST : Kind.OPTIONAL;
+			}
+			if (returnType == entityType) {
+				return Kind.ENTITY;
+			}
+			if (returnType == long.class || returnType == Long.class || returnType == int.class || returnType == Integer.class) {
+				return Kind.COUNT;
+			}
+			if (returnType == boolean.class || returnType == Boolean.class) {
+				return Kind.EXISTS;
+			}
+
+			throw new IllegalStateException(String.format("Method %s.%s returns %s, which is not supported",
+					method.getDeclaringClass().getSimpleName(), method.getName(), returnType.getSimpleName()));
+		}
+
+		private static final class Plan {
+			private final long generation;
+			private final Query query;
+
+			Plan(long generation, Query query) {
+				this.generation = generation;
+				this.query = query;
+			}
+		}
+
+		private IllegalStateException invalid(String message) {
+			return new IllegalStateException(String.format("Method %s.%s %s",
+					method.getDeclaringClass().getSimpleName(), method.getName(), message));
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package vn.lanhoang.ontology.storage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log of the changes made since the last snapshot.
+ *
+ * <p>Every triple is written on its own line in N-Triples syntax, prefixed
+ * with {@code A} when it was added or {@code D} when it was deleted. A line
+ * holding only {@code C} closes each write, a write without it was cut short
+ * and is ignored on replay.</p>
+ */
+public class ChangeJournal implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(ChangeJournal.class);
+	private static final String ADDED = "A ";
+	private static final String DELETED = "D ";
+	private static final String COMMIT = "C";
+
+	private final File file;
+	private Writer writer;
+	private long size;
+
+	public ChangeJournal(String path) {
+		this.file = new File(path);
+		this.size = file.length();
+	}
+
+	/**
+	 * Append one write to the journal
+	 *
+	 * @param changes Triples added and removed by the write
+	 * @throws IOException
+	 */
+	public synchronized void append(ChangeSet changes) throws IOException {
+		if (writer == null) {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+		}
+
+		StringBuilder sb = new StringBuilder();
+		for (Triple triple : changes.getRemoved()) {
+			sb.append(DELETED).append(NodeFmtLib.str(triple)).append(" .\n");
+		}
+		for (Triple triple : changes.getAdded()) {
+			sb.append(ADDED).append(NodeFmtLib.str(triple)).append(" .\n");
+		}
+		sb.append(COMMIT).append('\n');
+
+		String entry = sb.toString();
+		writer.write(entry);
+		writer.flush();
+		size += entry.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	/**
+	 * Apply every complete write of the journal to a graph, an incomplete
+	 * write at the end of the file is discarded
+	 *
+	 * @param graph Graph loaded from the last snapshot
+	 * @return Number of writes applied
+	 * @throws IOException
+	 */
+	public synchronized int replay(Graph graph) throws IOException {
+		if (!file.exists()) {
+			return 0;
+		}
+
+		int count = 0;
+		long committed = 0;
+		long read = 0;
+		StringBuilder deleted = new StringBuilder();
+		StringBuilder added = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				read += line.getBytes(StandardCharsets.UTF_8).length + 1;
+				if (line.startsWith(DELETED)) {
+					deleted.append(line, DELETED.length(), line.length()).append('\n');
+				} else if (line.startsWith(ADDED)) {
+					added.append(line, ADDED.length(), line.length()).append('\n');
+				} else if (line.equals(COMMIT)) {
+					apply(deleted, graph::delete);
+					apply(added, graph::add);
+					deleted.setLength(0);
+					added.setLength(0);
+					committed = read;
+					count++;
+				}
+			}
+		}
+
+		if (committed < file.length()) {
+			log.warn("Discarding {} bytes of incomplete changes from {}", file.length() - committed, file);
+			truncate(committed);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Empty the journal once its changes are part of a snapshot
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void reset() throws IOException {
+		truncate(0);
+	}
+
+	public synchronized long size() {
+		return size;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer != null) {
+			writer.close();
+			writer = null;
+		}
+	}
+
+	private void truncate(long length) throws IOException {
+		close();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(length);
+		}
+		size = length;
+	}
+
+	private void apply(StringBuilder triples, Consumer<Triple> action) {
+		if (triples.length() == 0) {
+			return;
+		}
+
+		RDFParser.fromString(triples.toString())
+			.lang(Lang.NTRIPLES)
+			.labelToNode(LabelToNode.createUseLabelEncoded())
+			.parse(new StreamRDFBase() {
+				@Override
+				public void triple(Triple triple) {
+					action.accept(triple);
+				}
+			});
+	}
+}
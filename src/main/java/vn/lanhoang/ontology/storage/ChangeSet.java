@@ -0,0 +1,51 @@
+package vn.lanhoang.ontology.storage;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.jena.graph.Triple;
+
+/**
+ * Triples added and removed by one write.
+ *
+ * <p>Removals are applied before additions when the set is replayed.</p>
+ */
+public class ChangeSet {
+
+	private final Set<Triple> added = new LinkedHashSet<>();
+	private final Set<Triple> removed = new LinkedHashSet<>();
+
+	public void add(Triple triple) {
+		// A triple removed then added back in the same write is unchanged
+		if (!removed.remove(triple)) {
+			added.add(triple);
+		}
+	}
+
+	public void remove(Triple triple) {
+		added.remove(triple);
+		removed.add(triple);
+	}
+
+	public Set<Triple> getAdded() {
+		return Collections.unmodifiableSet(added);
+	}
+
+	public Set<Triple> getRemoved() {
+		return Collections.unmodifiableSet(removed);
+	}
+
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty();
+	}
+
+	public int size() {
+		return added.size() + removed.size();
+	}
+
+	@Override
+	public String toString() {
+		return "ChangeSet [added=" + added.size() + ", removed=" + removed.size() + "]";
+	}
+}
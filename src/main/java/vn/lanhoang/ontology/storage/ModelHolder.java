@@ -0,0 +1,569 @@
+package vn.lanhoang.ontology.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.sparql.graph.GraphReadOnly;
+import org.apache.jena.util.FileManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the parsed ontology resident in memory so that it is loaded once
+ * and shared by every repository.
+ *
+ * <p>The model is only parsed again when {@link #reload()} is called or when
+ * the file on disk was modified by someone else.</p>
+ *
+ * <p>Writes are not serialized back to the file. The triples they add and
+ * remove are appended to a {@link ChangeJournal} next to the file, and a
+ * background checkpoint folds the journal into a new snapshot of the file
+ * once {@code checkpointInterval} has passed or the journal grew past
+ * {@code checkpointSize}. Loading replays the journal on top of the file.</p>
+ *
+ * <p>With a {@link SnapshotFormat}, checkpoints also write a binary RDF
+ * Thrift snapshot, which loads much faster than RDF/XML and is read instead
+ * of the file as long as it is not older. The RDF/XML file can be left out
+ * of checkpoints, and written on demand with {@link #exportRdfXml(String)}.</p>
+ *
+ * <p>Jena's in-memory graph is not safe under concurrent writes, so access
+ * goes through a read-write lock: any number of {@link #read(Function)}
+ * calls run in parallel, {@link #update(Consumer)} calls run one at a time
+ * and wait for the readers to leave. A checkpoint holds a read lock while it
+ * writes the snapshot, so it only blocks writers.</p>
+ */
+public class ModelHolder implements ModelStore {
+
+	private static final Logger log = LoggerFactory.getLogger(ModelHolder.class);
+	public static final long DEFAULT_CHECK_INTERVAL = 1000L;
+	public static final long DEFAULT_CHECKPOINT_INTERVAL = 60L;
+	public static final long DEFAULT_CHECKPOINT_SIZE = 16L * 1024 * 1024;
+
+	private final String path;
+	private final long checkInterval;
+	private final long checkpointInterval;
+	private final long checkpointSize;
+	private final SnapshotFormat snapshotFormat;
+	private final boolean rdfXmlExport;
+	private final ChangeJournal journal;
+	private final StatementListener recorder = new ChangeRecorder();
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Object checkpointLock = new Object();
+	private final List<ModelStoreListener> listeners = new CopyOnWriteArrayList<>();
+	private final AtomicLong version = new AtomicLong();
+	private volatile Model model;
+	private volatile Model readModel;
+	private volatile SubclassIndex subclassIndex;
+	private volatile long lastModified;
+	private volatile long lastChecked;
+	private ChangeSet pending = new ChangeSet();
+	private volatile ScheduledExecutorService checkpointer;
+
+	public ModelHolder(String path) {
+		this(path, DEFAULT_CHECKPOINT_INTERVAL, DEFAULT_CHECKPOINT_SIZE);
+	}
+
+	/**
+	 * @param path .owl file path
+	 * @param checkpointInterval Seconds between two checkpoints, 0 to only checkpoint on size
+	 * @param checkpointSize Journal size in bytes that triggers a checkpoint
+	 */
+	public ModelHolder(String path, long checkpointInterval, long checkpointSize) {
+		this(path, checkpointInterval, checkpointSize, SnapshotFormat.NONE, true);
+	}
+
+	/**
+	 * @param path .owl file path
+	 * @param checkpointInterval Seconds between two checkpoints, 0 to only checkpoint on size
+	 * @param checkpointSize Journal size in bytes that triggers a checkpoint
+	 * @param snapshotFormat Binary snapshot written on checkpoints
+	 * @param rdfXmlExport Whether checkpoints also rewrite the .owl file, always true without a snapshot
+	 */
+	public ModelHolder(String path, long checkpointInterval, long checkpointSize, SnapshotFormat snapshotFormat, boolean rdfXmlExport) {
+		this.path = path;
+		this.checkInterval = DEFAULT_CHECK_INTERVAL;
+		this.checkpointInterval = checkpointInterval;
+		this.checkpointSize = checkpointSize;
+		this.snapshotFormat = snapshotFormat;
+		this.rdfXmlExport = rdfXmlExport || snapshotFormat == SnapshotFormat.NONE;
+		this.journal = new ChangeJournal(path + ".journal");
+	}
+
+	/**
+	 * Shared, writable model. Changes made to it are journaled on the next
+	 * {@link #commit()}, writes should go through {@link #update(Consumer)}
+	 *
+	 * @return Model
+	 */
+	@Override
+	public Model getModel() {
+		refresh();
+		return model;
+	}
+
+	/**
+	 * Read only view over the shared model, reads should go through
+	 * {@link #read(Function)}
+	 *
+	 * @return Model
+	 */
+	@Override
+	public Model getReadModel() {
+		refresh();
+		return readModel;
+	}
+
+	/**
+	 * Subclass closure of the shared model's classes
+	 *
+	 * @return SubclassIndex
+	 */
+	@Override
+	public SubclassIndex getSubclassIndex() {
+		refresh();
+		return subclassIndex;
+	}
+
+	/**
+	 * Read the shared model while no write is running
+	 *
+	 * @param action Reads to run against the read only view
+	 * @return Result of the action
+	 */
+	@Override
+	public <T> T read(Function<Model, T> action) {
+		refresh();
+		lock.readLock().lock();
+		try {
+			return action.apply(readModel);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Stream over the shared model. Writes wait until the stream is closed,
+	 * so it must be closed, on the thread that opened it
+	 *
+	 * @param action Builds the stream from the read only view
+	 * @return Stream releasing the read lock when closed
+	 */
+	@Override
+	public <T> Stream<T> stream(Function<Model, Stream<T>> action) {
+		refresh();
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return action.apply(readModel).onClose(readLock::unlock);
+		} catch (RuntimeException e) {
+			readLock.unlock();
+			throw e;
+		}
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Apply changes to the shared model and journal them as one write
+	 *
+	 * @param action Changes to apply
+	 * @return Changes that were journaled
+	 */
+	@Override
+	public ChangeSet update(Consumer<Model> action) {
+		if (lock.getReadHoldCount() > 0) {
+			// A read lock cannot be upgraded, waiting here would never end
+			throw new IllegalStateException("Cannot write to the model while reading it on the same thread");
+		}
+
+		refresh();
+		lock.writeLock().lock();
+		try {
+			// Changes made outside a write are journaled on their own, so only this write is rolled back
+			commit();
+			try {
+				action.accept(model);
+			} catch (RuntimeException e) {
+				rollback();
+				throw e;
+			}
+
+			return commit();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Journal the changes made to the shared model since the last commit
+	 *
+	 * @return Changes that were journaled
+	 */
+	public synchronized ChangeSet commit() {
+		ChangeSet changes = pending;
+		if (changes.isEmpty()) {
+			return changes;
+		}
+		pending = new ChangeSet();
+
+		try {
+			journal.append(changes);
+		} catch (IOException e) {
+			log.error("Cannot write changes to {} - Message: {}", journal.getFile(), e.getMessage());
+		}
+
+		version.incrementAndGet();
+		for (ModelStoreListener listener : listeners) {
+			listener.written(changes);
+		}
+
+		ScheduledExecutorService executor = checkpointer;
+		if (journal.size() >= checkpointSize && executor != null) {
+			executor.execute(this::checkpoint);
+		}
+
+		return changes;
+	}
+
+	/**
+	 * Revert the changes made to the shared model since the last commit without journaling them
+	 */
+	private void rollback() {
+		ChangeSet changes;
+		synchronized (this) {
+			changes = pending;
+			pending = new ChangeSet();
+		}
+
+		Graph graph = model.getGraph();
+		for (Triple triple : changes.getAdded()) {
+			graph.delete(triple);
+		}
+		for (Triple triple : changes.getRemoved()) {
+			graph.add(triple);
+		}
+
+		synchronized (this) {
+			pending = new ChangeSet();
+		}
+	}
+
+	/**
+	 * Write the shared model as a new snapshot of the file and empty the journal
+	 */
+	public void checkpoint() {
+		lock.readLock().lock();
+		try {
+			synchronized (checkpointLock) {
+				writeCheckpoint();
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void writeCheckpoint() {
+		commit();
+		if (model == null || journal.size() == 0) {
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		try {
+			if (rdfXmlExport) {
+				write(model, path, Lang.RDFXML, false);
+				lastModified = fileLastModified();
+			}
+			// Written last, so that it is never older than the file it was taken with
+			if (snapshotFormat != SnapshotFormat.NONE) {
+				write(model, snapshotPath(), Lang.RDFTHRIFT, snapshotFormat.isCompressed());
+			}
+			journal.reset();
+			log.debug("Checkpoint of {} written in {} ms", path, System.currentTimeMillis() - start);
+		} catch (IOException | RuntimeException e) {
+			// The journal is kept, so nothing is lost until the next checkpoint succeeds
+			log.error("Cannot write checkpoint to {} - Message: {}", path, e.getMessage());
+		}
+	}
+
+	/**
+	 * Parse the file again and replace the shared model
+	 */
+	@Override
+	public void reload() {
+		lock.writeLock().lock();
+		try {
+			commit();
+			setModel(parse());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Checkpoint pending changes and stop the background checkpoint
+	 */
+	@Override
+	public void close() {
+		checkpoint();
+		lock.writeLock().lock();
+		try {
+			if (checkpointer != null) {
+				checkpointer.shutdown();
+				checkpointer = null;
+			}
+			journal.close();
+		} catch (IOException e) {
+			log.error("Cannot close {} - Message: {}", journal.getFile(), e.getMessage());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Load the model on first use, and parse it again when the file changed
+	 * on disk. A thread holding a read lock keeps its model until it leaves
+	 */
+	private void refresh() {
+		if (model == null) {
+			load();
+		} else if (lock.getReadHoldCount() == 0 && isModifiedOnDisk()) {
+			lock.writeLock().lock();
+			try {
+				if (fileLastModified() != lastModified) {
+					log.info("File {} changed on disk, reloading", path);
+					reload();
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	private void load() {
+		lock.writeLock().lock();
+		try {
+			if (model == null) {
+				setModel(parse());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Write the shared model as RDF/XML, for editors that cannot read the
+	 * binary snapshot
+	 *
+	 * @param target File to write
+	 * @throws IOException
+	 */
+	public void exportRdfXml(String target) throws IOException {
+		try {
+			read(model -> {
+				try {
+					write(model, target, Lang.RDFXML, false);
+					return null;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private Model parse() {
+		long start = System.currentTimeMillis();
+		File snapshot = snapshotFormat == SnapshotFormat.NONE ? null : new File(snapshotPath());
+		if (snapshot != null && snapshot.exists() && snapshot.lastModified() >= fileLastModified()) {
+			Model loaded = ModelFactory.createDefaultModel();
+			RDFParser.source(snapshot.getPath()).lang(Lang.RDFTHRIFT).parse(loaded);
+			log.info("Loaded {} triples from {} in {} ms", loaded.size(), snapshot, System.currentTimeMillis() - start);
+
+			return loaded;
+		}
+
+		Model loaded = FileManager.getInternal().loadModelInternal(path);
+		log.info("Loaded {} triples from {} in {} ms", loaded.size(), path, System.currentTimeMillis() - start);
+		if (snapshot != null) {
+			// Next start reads the snapshot, the journal is replayed on top of both
+			try {
+				write(loaded, snapshot.getPath(), Lang.RDFTHRIFT, snapshotFormat.isCompressed());
+			} catch (IOException | RuntimeException e) {
+				log.error("Cannot write snapshot to {} - Message: {}", snapshot, e.getMessage());
+			}
+		}
+
+		return loaded;
+	}
+
+	private String snapshotPath() {
+		return path + snapshotFormat.getExtension();
+	}
+
+	/**
+	 * Write to a temporary file then move it over the target, so that a
+	 * crash never leaves a truncated file behind
+	 */
+	private static void write(Model model, String file, Lang lang, boolean compressed) throws IOException {
+		Path target = new File(file).toPath();
+		Path temp = new File(file + ".tmp").toPath();
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(temp.toFile()));
+		if (compressed) {
+			out = new GZIPOutputStream(out);
+		}
+		try {
+			RDFDataMgr.write(out, model, lang);
+		} finally {
+			out.close();
+		}
+
+		try {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Use an already loaded model instead of parsing the file, the journal
+	 * is replayed on top of it
+	 *
+	 * @param model Loaded model
+	 */
+	@Override
+	public void setModel(Model model) {
+		lock.writeLock().lock();
+		try {
+			replaceModel(model);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void replaceModel(Model model) {
+		try {
+			int replayed = journal.replay(model.getGraph());
+			if (replayed > 0) {
+				log.info("Replayed {} journaled writes on top of {}", replayed, path);
+			}
+		} catch (IOException e) {
+			log.error("Cannot replay {} - Message: {}", journal.getFile(), e.getMessage());
+		}
+
+		if (this.model != null) {
+			this.model.unregister(recorder);
+			this.model.unregister(subclassIndex);
+		}
+		SubclassIndex index = new SubclassIndex(model);
+		model.register(recorder);
+		model.register(index);
+		this.subclassIndex = index;
+		this.readModel = ModelFactory.createModelForGraph(new GraphReadOnly(model.getGraph()));
+		this.lastModified = fileLastModified();
+		this.lastChecked = System.currentTimeMillis();
+		this.model = model;
+		startCheckpointer();
+		version.incrementAndGet();
+		for (ModelStoreListener listener : listeners) {
+			listener.replaced();
+		}
+	}
+
+	@Override
+	public long getVersion() {
+		return version.get();
+	}
+
+	@Override
+	public void addListener(ModelStoreListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(ModelStoreListener listener) {
+		listeners.remove(listener);
+	}
+
+	private void startCheckpointer() {
+		if (checkpointer != null) {
+			return;
+		}
+
+		checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ontology-checkpoint");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (checkpointInterval > 0) {
+			checkpointer.scheduleWithFixedDelay(this::checkpoint, checkpointInterval, checkpointInterval, TimeUnit.SECONDS);
+		}
+	}
+
+	private boolean isModifiedOnDisk() {
+		if (checkInterval < 0) {
+			return false;
+		}
+
+		long now = System.currentTimeMillis();
+		if (now - lastChecked < checkInterval) {
+			return false;
+		}
+		lastChecked = now;
+
+		return fileLastModified() != lastModified;
+	}
+
+	private long fileLastModified() {
+		File file = new File(path);
+		return file.exists() ? file.lastModified() : 0L;
+	}
+
+	private class ChangeRecorder extends StatementListener {
+		@Override
+		public void addedStatement(Statement s) {
+			synchronized (ModelHolder.this) {
+				pending.add(s.asTriple());
+			}
+		}
+
+		@Override
+		public void removedStatement(Statement s) {
+			synchronized (ModelHolder.this) {
+				pending.remove(s.asTriple());
+			}
+		}
+	}
+}
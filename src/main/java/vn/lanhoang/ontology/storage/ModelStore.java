@@ -0,0 +1,99 @@
+package vn.lanhoang.ontology.storage;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.jena.rdf.model.Model;
+
+/**
+ * Where the shared model lives. Repositories only read and write it through
+ * this interface, so the storage can be swapped in {@code OntologyVariables}.
+ *
+ * @see ModelHolder RDF/XML file kept in memory
+ * @see TdbModelStore TDB2 dataset on disk
+ */
+public interface ModelStore {
+
+	/**
+	 * Shared, writable model, writes should go through {@link #update(Consumer)}
+	 *
+	 * @return Model
+	 */
+	Model getModel();
+
+	/**
+	 * Read only view over the shared model, reads should go through
+	 * {@link #read(Function)}
+	 *
+	 * @return Model
+	 */
+	Model getReadModel();
+
+	/**
+	 * Subclass closure of the shared model's classes
+	 *
+	 * @return SubclassIndex
+	 */
+	SubclassIndex getSubclassIndex();
+
+	/**
+	 * Read the shared model while no write is running
+	 *
+	 * @param action Reads to run against the read only view
+	 * @return Result of the action
+	 */
+	<T> T read(Function<Model, T> action);
+
+	/**
+	 * Stream over the shared model. The read ends when the stream is closed,
+	 * so it must be closed, on the thread that opened it
+	 *
+	 * @param action Builds the stream from the read only view
+	 * @return Stream ending the read when closed
+	 */
+	<T> Stream<T> stream(Function<Model, Stream<T>> action);
+
+	/**
+	 * Apply changes to the shared model as one write
+	 *
+	 * @param action Changes to apply
+	 * @return Changes that were written
+	 */
+	ChangeSet update(Consumer<Model> action);
+
+	/**
+	 * Replace the shared model's content with an already loaded model
+	 *
+	 * @param model Loaded model
+	 */
+	void setModel(Model model);
+
+	/**
+	 * Number increased by every write and reload, to tell whether something
+	 * read earlier may have changed. Reading it before reading the model
+	 * never pairs a version with older content
+	 *
+	 * @return Version of the content
+	 */
+	long getVersion();
+
+	/**
+	 * Read the storage again
+	 */
+	void reload();
+
+	/**
+	 * Be told of every write and reload of the storage
+	 *
+	 * @param listener Listener
+	 */
+	void addListener(ModelStoreListener listener);
+
+	void removeListener(ModelStoreListener listener);
+
+	/**
+	 * Write pending changes and release the storage
+	 */
+	void close();
+}
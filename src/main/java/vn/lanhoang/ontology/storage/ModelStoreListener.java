@@ -0,0 +1,22 @@
+package vn.lanhoang.ontology.storage;
+
+/**
+ * Told of the changes made to a {@link ModelStore}, after they are written.
+ *
+ * <p>Listeners are called on the writing thread, while the write still holds
+ * the store, so they should only drop what they cached.</p>
+ */
+public interface ModelStoreListener {
+
+	/**
+	 * Triples were added or removed
+	 *
+	 * @param changes Changes that were written, never empty
+	 */
+	void written(ChangeSet changes);
+
+	/**
+	 * The whole content may have changed, after a reload or an import
+	 */
+	void replaced();
+}
@@ -0,0 +1,36 @@
+package vn.lanhoang.ontology.storage;
+
+/**
+ * Binary snapshot {@link ModelHolder} writes next to the .owl file, read
+ * instead of the RDF/XML when it is at least as recent
+ */
+public enum SnapshotFormat {
+	/**
+	 * Only the RDF/XML file is written
+	 */
+	NONE(null, false),
+	/**
+	 * RDF Thrift, in {@code <path>.rt}
+	 */
+	THRIFT(".rt", false),
+	/**
+	 * Gzipped RDF Thrift, in {@code <path>.rt.gz}
+	 */
+	THRIFT_GZIP(".rt.gz", true);
+
+	private final String extension;
+	private final boolean compressed;
+
+	SnapshotFormat(String extension, boolean compressed) {
+		this.extension = extension;
+		this.compressed = compressed;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	public boolean isCompressed() {
+		return compressed;
+	}
+}
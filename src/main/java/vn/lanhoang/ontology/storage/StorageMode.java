@@ -0,0 +1,15 @@
+package vn.lanhoang.ontology.storage;
+
+/**
+ * Where {@code OntologyVariables} keeps the shared model
+ */
+public enum StorageMode {
+	/**
+	 * The .owl file at {@code path}, parsed into memory, see {@link ModelHolder}
+	 */
+	FILE,
+	/**
+	 * A TDB2 database at {@code tdbLocation}, see {@link TdbModelStore}
+	 */
+	TDB2
+}
@@ -0,0 +1,120 @@
+package vn.lanhoang.ontology.storage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDFS;
+
+/**
+ * Transitive {@code rdfs:subClassOf} closure of the model's classes.
+ *
+ * <p>The direct subclasses of every class are read once, then kept up to date
+ * from the model's change notifications. Closures are computed on first use
+ * and only the ones containing a changed superclass are dropped.</p>
+ */
+public class SubclassIndex extends StatementListener {
+
+	private final Map<Node, Set<Node>> subclasses = new ConcurrentHashMap<>();
+	private final Map<Node, List<Node>> closures = new ConcurrentHashMap<>();
+	private final AtomicLong version = new AtomicLong();
+
+	public SubclassIndex(Model model) {
+		ExtendedIterator<Triple> iter = model.getGraph().find(Node.ANY, RDFS.subClassOf.asNode(), Node.ANY);
+		try {
+			while (iter.hasNext()) {
+				Triple triple = iter.next();
+				addSubclass(triple.getSubject(), triple.getObject());
+			}
+		} finally {
+			iter.close();
+		}
+	}
+
+	/**
+	 * A class and all of its named subclasses, direct or not
+	 *
+	 * @param klass Class node
+	 * @return Unmodifiable list starting with the class itself
+	 */
+	public List<Node> closure(Node klass) {
+		List<Node> closure = closures.get(klass);
+		if (closure == null) {
+			long seen = version.get();
+			closure = computeClosure(klass);
+			// Do not cache a closure the hierarchy changed under, checked under
+			// the lock of changed() so an invalidation can not run in between
+			synchronized (this) {
+				if (seen == version.get()) {
+					closures.put(klass, closure);
+				}
+			}
+		}
+
+		return closure;
+	}
+
+	/**
+	 * @return Number of hierarchy changes seen so far
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	@Override
+	public void addedStatement(Statement s) {
+		if (s.getPredicate().equals(RDFS.subClassOf)) {
+			addSubclass(s.getSubject().asNode(), s.getObject().asNode());
+			changed(s.getObject().asNode());
+		}
+	}
+
+	@Override
+	public void removedStatement(Statement s) {
+		if (s.getPredicate().equals(RDFS.subClassOf)) {
+			Set<Node> direct = subclasses.get(s.getObject().asNode());
+			if (direct != null) {
+				direct.remove(s.getSubject().asNode());
+			}
+			changed(s.getObject().asNode());
+		}
+	}
+
+	private void addSubclass(Node subclass, Node superclass) {
+		if (subclass.isURI() && superclass.isURI()) {
+			subclasses.computeIfAbsent(superclass, key -> ConcurrentHashMap.newKeySet()).add(subclass);
+		}
+	}
+
+	private synchronized void changed(Node superclass) {
+		version.incrementAndGet();
+		closures.values().removeIf(closure -> closure.contains(superclass));
+	}
+
+	private List<Node> computeClosure(Node klass) {
+		Set<Node> visited = new LinkedHashSet<>();
+		Deque<Node> queue = new ArrayDeque<>();
+		queue.add(klass);
+		while (!queue.isEmpty()) {
+			Node current = queue.poll();
+			if (visited.add(current)) {
+				queue.addAll(subclasses.getOrDefault(current, Collections.emptySet()));
+			}
+		}
+
+		return Collections.unmodifiableList(new ArrayList<>(visited));
+	}
+}
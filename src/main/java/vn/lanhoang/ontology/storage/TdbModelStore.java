@@ -0,0 +1,272 @@
+package vn.lanhoang.ontology.storage;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.graph.GraphReadOnly;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the ontology in a TDB2 dataset on disk instead of a file parsed into
+ * memory. Opening it does not depend on the dataset's size, and every
+ * {@link #update(Consumer)} is a TDB2 write transaction that is rolled back
+ * when the action fails.
+ *
+ * <p>Reads run in TDB2 read transactions, which see the last committed write
+ * and never wait for writers. Writes run one at a time.</p>
+ *
+ * <p>An empty dataset is filled once from the .owl file at {@code importPath},
+ * see {@link #importFile(String)}.</p>
+ */
+public class TdbModelStore implements ModelStore {
+
+	private static final Logger log = LoggerFactory.getLogger(TdbModelStore.class);
+
+	private final String location;
+	private final String importPath;
+	private final StatementListener recorder = new ChangeRecorder();
+	private final List<ModelStoreListener> listeners = new CopyOnWriteArrayList<>();
+	private final AtomicLong version = new AtomicLong();
+	private volatile Dataset dataset;
+	private volatile Model model;
+	private volatile Model readModel;
+	private volatile SubclassIndex subclassIndex;
+	private ChangeSet pending;
+
+	/**
+	 * @param location TDB2 database directory, created when missing
+	 * @param importPath .owl file imported into an empty database, may be null
+	 */
+	public TdbModelStore(String location, String importPath) {
+		this.location = location;
+		this.importPath = importPath;
+	}
+
+	@Override
+	public Model getModel() {
+		open();
+		return model;
+	}
+
+	@Override
+	public Model getReadModel() {
+		open();
+		return readModel;
+	}
+
+	@Override
+	public SubclassIndex getSubclassIndex() {
+		open();
+		return subclassIndex;
+	}
+
+	public String getLocation() {
+		return location;
+	}
+
+	@Override
+	public <T> T read(Function<Model, T> action) {
+		open();
+		return Txn.calculateRead(dataset, () -> action.apply(readModel));
+	}
+
+	@Override
+	public <T> Stream<T> stream(Function<Model, Stream<T>> action) {
+		open();
+		if (dataset.isInTransaction()) {
+			return action.apply(readModel);
+		}
+
+		dataset.begin(ReadWrite.READ);
+		try {
+			return action.apply(readModel).onClose(dataset::end);
+		} catch (RuntimeException e) {
+			dataset.end();
+			throw e;
+		}
+	}
+
+	@Override
+	public ChangeSet update(Consumer<Model> action) {
+		open();
+		ChangeSet changes;
+		try {
+			changes = Txn.calculateWrite(dataset, () -> {
+				pending = new ChangeSet();
+				action.accept(model);
+				return pending;
+			});
+		} catch (RuntimeException e) {
+			// The transaction was rolled back but the index saw its changes
+			rebuildIndex();
+			throw e;
+		} finally {
+			pending = null;
+		}
+
+		if (!changes.isEmpty()) {
+			version.incrementAndGet();
+			for (ModelStoreListener listener : listeners) {
+				listener.written(changes);
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Replace the dataset's default graph with an already loaded model
+	 *
+	 * @param model Loaded model
+	 */
+	@Override
+	public void setModel(Model model) {
+		open();
+		Txn.executeWrite(dataset, () -> {
+			this.model.removeAll();
+			this.model.add(model);
+		});
+		rebuildIndex();
+		replaced();
+	}
+
+	/**
+	 * Nothing is cached but the subclass index, which is read again
+	 */
+	@Override
+	public void reload() {
+		open();
+		rebuildIndex();
+		replaced();
+	}
+
+	@Override
+	public long getVersion() {
+		return version.get();
+	}
+
+	@Override
+	public void addListener(ModelStoreListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(ModelStoreListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (dataset != null) {
+			model.unregister(recorder);
+			model.unregister(subclassIndex);
+			dataset.close();
+			dataset = null;
+		}
+	}
+
+	/**
+	 * Add the triples of a file to the dataset's default graph in one
+	 * transaction
+	 *
+	 * @param path File to import, in any syntax Jena reads
+	 * @return Number of triples in the default graph afterwards
+	 */
+	public long importFile(String path) {
+		open();
+		long size = load(dataset, path);
+		rebuildIndex(dataset);
+		replaced();
+
+		return size;
+	}
+
+	private void open() {
+		if (dataset != null) {
+			return;
+		}
+
+		synchronized (this) {
+			if (dataset != null) {
+				return;
+			}
+
+			Dataset opened = TDB2Factory.connectDataset(location);
+			Model defaultModel = opened.getDefaultModel();
+			defaultModel.register(recorder);
+			model = defaultModel;
+			readModel = ModelFactory.createModelForGraph(new GraphReadOnly(defaultModel.getGraph()));
+
+			boolean empty = Txn.calculateRead(opened, defaultModel::isEmpty);
+			if (empty && importPath != null && new File(importPath).exists()) {
+				load(opened, importPath);
+			}
+			rebuildIndex(opened);
+			// Published last, the unsynchronized check above must not see a store still being filled
+			dataset = opened;
+			log.info("Opened TDB2 database {}", location);
+		}
+	}
+
+	private long load(Dataset target, String path) {
+		long start = System.currentTimeMillis();
+		long size = Txn.calculateWrite(target, () -> {
+			RDFDataMgr.read(model, path);
+			return model.size();
+		});
+		log.info("Imported {} into {}, {} triples in {} ms", path, location, size, System.currentTimeMillis() - start);
+
+		return size;
+	}
+
+	private void rebuildIndex() {
+		rebuildIndex(dataset);
+	}
+
+	private synchronized void rebuildIndex(Dataset target) {
+		SubclassIndex index = Txn.calculateRead(target, () -> new SubclassIndex(model));
+		if (subclassIndex != null) {
+			model.unregister(subclassIndex);
+		}
+		model.register(index);
+		subclassIndex = index;
+	}
+
+	private void replaced() {
+		version.incrementAndGet();
+		for (ModelStoreListener listener : listeners) {
+			listener.replaced();
+		}
+	}
+
+	private class ChangeRecorder extends StatementListener {
+		@Override
+		public void addedStatement(Statement s) {
+			// Only the single writer transaction changes the model
+			if (pending != null) {
+				pending.add(s.asTriple());
+			}
+		}
+
+		@Override
+		public void removedStatement(Statement s) {
+			if (pending != null) {
+				pending.remove(s.asTriple());
+			}
+		}
+	}
+}
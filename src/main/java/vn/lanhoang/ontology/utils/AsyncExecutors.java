@@ -0,0 +1,65 @@
+package vn.lanhoang.ontology.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executors running the asynchronous repository methods.
+ *
+ * <p>Virtual threads are used when the JVM has them, looked up by reflection
+ * so that the library still runs on Java 8.</p>
+ */
+public final class AsyncExecutors {
+
+	private static final Logger log = LoggerFactory.getLogger(AsyncExecutors.class);
+	private static final String THREAD_NAME = "ontology-async-";
+
+	private AsyncExecutors() {
+	}
+
+	/**
+	 * Executor running at most {@code threads} tasks at once. Tasks submitted
+	 * while {@code queueSize} tasks are already waiting are rejected with a
+	 * {@link java.util.concurrent.RejectedExecutionException}
+	 *
+	 * @param threads Tasks run at once
+	 * @param queueSize Tasks waiting for a thread
+	 * @return ExecutorService
+	 */
+	public static ExecutorService bounded(int threads, int queueSize) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueSize), threadFactory(), new ThreadPoolExecutor.AbortPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * @return Factory of virtual threads when available, else of daemon threads
+	 */
+	public static ThreadFactory threadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME, 0L);
+			Method factory = builderType.getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			log.debug("Virtual threads are not available, using platform threads");
+		}
+
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, THREAD_NAME + count.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
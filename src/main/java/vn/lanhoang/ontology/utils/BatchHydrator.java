@@ -0,0 +1,502 @@
+package vn.lanhoang.ontology.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import vn.lanhoang.ontology.IModelExecutor;
+import vn.lanhoang.ontology.ModelManager;
+import vn.lanhoang.ontology.annotation.FetchType;
+import vn.lanhoang.ontology.cache.IdentityMap;
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.mapping.FetchStrategy;
+import vn.lanhoang.ontology.mapping.LazyList;
+import vn.lanhoang.ontology.mapping.LazyReferences;
+import vn.lanhoang.ontology.mapping.MappingPlan;
+import vn.lanhoang.ontology.mapping.MappingPlan.PropertyMapping;
+
+/**
+ * Hydrates a whole page of resources at once instead of one resource at a
+ * time.
+ *
+ * <p>The statements of the page's resources are read first, then the ones of
+ * every distinct resource they reference, each resource being scanned once.
+ * With batch hydration on, a referenced resource is built into one instance
+ * that is shared by every object of the page referencing it.</p>
+ *
+ * <p>How far references are followed comes from the {@link FetchStrategy}
+ * given to the read, else from the field's {@code @Fetch} annotation, else
+ * from {@link FetchStrategy#DEFAULT}. Nesting never goes deeper than
+ * {@code maxNestedCount}. Lazy references are read on first access, through
+ * the model store.</p>
+ *
+ * <p>Inside an {@link IdentityMap} unit of work, instances already read at
+ * least as deep are returned as they are, and are filled again when read
+ * deeper.</p>
+ *
+ * <p>An instance is meant for a single read, it is not thread safe.</p>
+ */
+public class BatchHydrator {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BatchHydrator.class);
+	private static final int STUB = -1;
+	private static final int PROXY = -2;
+	private final ModelManager modelManager = ModelManager.instance();
+	private final Model model;
+	private final Graph graph;
+	private final OntologyVariables ontologyVariables;
+	private final String baseUri;
+	private final FetchStrategy strategy;
+	private final boolean explicit;
+	private final boolean share;
+	private final int maxNestedCount;
+	private final Map<Node, List<Triple>> statements = new HashMap<>();
+	private final Map<Key, Object> children = new HashMap<>();
+	private final Set<Node> building = new HashSet<>();
+	// Resources read by each instance being built, innermost first
+	private final Deque<Set<Node>> reading = new ArrayDeque<>();
+	private final IdentityMap identityMap = IdentityMap.current();
+	private boolean lazy;
+
+	public BatchHydrator(Model model, OntologyVariables ontologyVariables) {
+		this(model, ontologyVariables, null);
+	}
+
+	/**
+	 * @param model Model to read
+	 * @param ontologyVariables Configuration
+	 * @param strategy Strategy of the read, overriding the fields' annotations, null for none
+	 */
+	public BatchHydrator(Model model, OntologyVariables ontologyVariables, FetchStrategy strategy) {
+		this.model = model;
+		this.graph = model.getGraph();
+		this.ontologyVariables = ontologyVariables;
+		this.baseUri = ontologyVariables.getBaseUri();
+		this.explicit = strategy != null;
+		this.strategy = explicit ? strategy : FetchStrategy.DEFAULT;
+		this.share = !Boolean.FALSE.equals(ontologyVariables.getBatchHydration());
+		this.maxNestedCount = ontologyVariables.getMaxNestedCount() == null ? Integer.MAX_VALUE : ontologyVariables.getMaxNestedCount();
+	}
+
+	/**
+	 * Build the objects of a page of resources
+	 *
+	 * @param resources Resources of the page, in order
+	 * @param type Class of the objects
+	 * @return One object per resource that could be built, in order
+	 */
+	public <O> List<O> hydrate(List<Resource> resources, Class<O> type) {
+		List<Node> roots = new ArrayList<>(resources.size());
+		for (Resource res : resources) {
+			if (res != null) {
+				roots.add(res.asNode());
+			}
+		}
+
+		return hydrateNodes(roots, type);
+	}
+
+	/**
+	 * Build the object of a single resource
+	 *
+	 * @param res Resource
+	 * @param type Class of the object
+	 * @return Object, null when it could not be built
+	 */
+	public <O> O hydrate(Resource res, Class<O> type) {
+		List<O> objects = hydrateNodes(Collections.singletonList(res.asNode()), type);
+		return objects.isEmpty() ? null : objects.get(0);
+	}
+
+	/**
+	 * @return Number of resources whose statements were read
+	 */
+	public int getScans() {
+		return statements.size();
+	}
+
+	/**
+	 * @return Resources whose statements were read
+	 */
+	public Set<Node> getScanned() {
+		return Collections.unmodifiableSet(statements.keySet());
+	}
+
+	/**
+	 * @return Whether some references were left to read on first access
+	 */
+	public boolean hasLazyReferences() {
+		return lazy;
+	}
+
+	private <O> List<O> hydrateNodes(List<Node> roots, Class<O> type) {
+		MappingPlan plan = modelManager.getPlan(type, baseUri);
+
+		// One pass over the page, then one over everything it loads
+		if (strategy.getType() == FetchType.EAGER || !explicit) {
+			Set<Node> referenced = new LinkedHashSet<>();
+			for (Node root : roots) {
+				for (Triple triple : statements(root)) {
+					PropertyMapping mapping = plan.get(triple.getPredicate());
+					if (mapping != null && isReference(mapping) && !triple.getObject().isLiteral()) {
+						referenced.add(triple.getObject());
+					}
+				}
+			}
+			for (Node node : referenced) {
+				statements(node);
+			}
+		}
+
+		int strength = explicit && strategy.getType() == FetchType.LAZY ? 1 : strength(strategy.getDepth());
+		List<O> objects = new ArrayList<>(roots.size());
+		for (Node root : roots) {
+			try {
+				if (identityMap == null) {
+					O obj = type.getDeclaredConstructor().newInstance();
+					fill(obj, root, plan, strategy.getDepth(), 0);
+					objects.add(obj);
+				} else {
+					objects.add(root(root, type, plan, strength));
+				}
+			} catch (ReflectiveOperationException e) {
+				LOG.error("Error reading object {} - Message: {}", root, e.getMessage());
+			}
+		}
+
+		return objects;
+	}
+
+	/**
+	 * Object of a resource read in the unit of work
+	 */
+	private <O> O root(Node root, Class<O> type, MappingPlan plan, int strength) throws ReflectiveOperationException {
+		String uri = name(root);
+		O obj = type.cast(identityMap.get(type, uri, strength));
+		if (obj != null) {
+			return obj;
+		}
+
+		long start = System.nanoTime();
+		obj = reuse(type, root);
+		if (obj == null) {
+			obj = type.getDeclaredConstructor().newInstance();
+		}
+		// A reference back to the root does not read it again
+		building.add(root);
+		reading.push(new HashSet<>());
+		Set<Node> dependencies;
+		try {
+			fill(obj, root, plan, strategy.getDepth(), 0);
+		} finally {
+			building.remove(root);
+			dependencies = reading.pop();
+		}
+		identityMap.put(type, uri, obj, strength, dependencies, System.nanoTime() - start);
+		return obj;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void fill(Object obj, Node node, MappingPlan plan, int remaining, int level) {
+		IModelExecutor mapper = modelManager.getExecutor(plan.getType());
+		List<PropertyMapping> mappings = plan.getMappings();
+		boolean[] assigned = new boolean[mappings.size()];
+		List[] lists = new List[mappings.size()];
+		depends(Collections.singleton(node));
+
+		for (Triple triple : statements(node)) {
+			PropertyMapping mapping = plan.get(triple.getPredicate());
+			if (mapping == null) {
+				continue;
+			}
+
+			int index = mapping.getIndex();
+			Node object = triple.getObject();
+			try {
+				switch (mapping.getKind()) {
+					case SCALAR:
+						if (!assigned[index]) {
+							mapper.invokeSetter(mapping.getField(), obj, model.asRDFNode(object));
+						}
+						break;
+					case LIST:
+						if (lists[index] == null) {
+							lists[index] = new ArrayList<>();
+						}
+						if (!object.isLiteral()) {
+							lists[index].add(object);
+						}
+						break;
+					case REFERENCE:
+						if (!assigned[index]) {
+							mapper.invokeSetter(mapping.getField(), obj, object.isLiteral() ? null : reference(object, mapping, remaining, level));
+						}
+						break;
+					default:
+						throw new IllegalArgumentException(String.format("Type %s not supported yet", mapping.getField().getType().getName()));
+				}
+			} catch (IllegalAccessException | InvocationTargetException e) {
+				LOG.error("Cannot map to desired object with, message: {}", e.getMessage());
+			}
+			assigned[index] = true;
+		}
+
+		try {
+			for (PropertyMapping mapping : mappings) {
+				List<Node> nodes = lists[mapping.getIndex()];
+				if (nodes != null) {
+					mapper.invokeSetter(mapping.getField(), obj, list(nodes, mapping, remaining, level));
+				}
+			}
+			mapper.invokeSetName(obj, name(node));
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			LOG.error("Cannot map to desired object with, message: {}", e.getMessage());
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private List list(List<Node> nodes, PropertyMapping mapping, int remaining, int level) {
+		if (fetchType(mapping) == FetchType.LAZY) {
+			lazy = true;
+			OntologyVariables variables = ontologyVariables;
+			FetchStrategy loadStrategy = explicit ? strategy : null;
+			return new LazyList<>(() -> variables.getModelStore().read(loaded ->
+					new BatchHydrator(loaded, variables, loadStrategy).hydrateNodes(nodes, mapping.getTargetType())));
+		}
+
+		List elements = ModelManager.createList(mapping.getTargetType());
+		for (Node node : nodes) {
+			Object element = reference(node, mapping, remaining, level);
+			if (element != null) {
+				elements.add(element);
+			}
+		}
+
+		return elements;
+	}
+
+	/**
+	 * Referenced object, read or not depending on the fetch strategy
+	 */
+	private Object reference(Node node, PropertyMapping mapping, int remaining, int level) {
+		FetchStrategy field = fieldStrategy(mapping);
+		int childRemaining = field == null ? remaining - 1 : field.getDepth() - 1;
+
+		switch (fetchType(mapping)) {
+			case LAZY:
+				return proxy(node, mapping);
+			case EAGER:
+				if (childRemaining >= 0 && level < maxNestedCount) {
+					return child(node, mapping, childRemaining, level + 1);
+				}
+				return stub(node, mapping);
+			default:
+				return stub(node, mapping);
+		}
+	}
+
+	private FetchStrategy fieldStrategy(PropertyMapping mapping) {
+		return explicit ? null : mapping.getFetch();
+	}
+
+	private FetchType fetchType(PropertyMapping mapping) {
+		FetchStrategy field = fieldStrategy(mapping);
+		return field == null ? strategy.getType() : field.getType();
+	}
+
+	/**
+	 * Instance of a referenced resource, shared when batch hydration is on
+	 */
+	private Object child(Node node, PropertyMapping mapping, int remaining, int level) {
+		Class<?> type = mapping.getTargetType();
+		Key key = new Key(type, node, remaining, level);
+		Object child = share ? children.get(key) : null;
+		if (child == null && identityMap != null) {
+			child = identityMap.get(type, name(node), strength(remaining));
+		}
+		if (child != null) {
+			if (identityMap != null) {
+				depends(identityMap.getDependencies(type, name(node)));
+			}
+			return child;
+		}
+		if (!building.add(node)) {
+			// The resource references itself
+			return stub(node, mapping);
+		}
+
+		Set<Node> dependencies = new HashSet<>();
+		reading.push(dependencies);
+		try {
+			long start = System.nanoTime();
+			child = reuse(type, node);
+			if (child == null) {
+				child = mapping.newTarget();
+			}
+			fill(child, node, modelManager.getPlan(type, baseUri), remaining, level);
+			if (share) {
+				children.put(key, child);
+			}
+			if (identityMap != null) {
+				identityMap.put(type, name(node), child, strength(remaining), dependencies, System.nanoTime() - start);
+			}
+			return child;
+		} catch (ReflectiveOperationException e) {
+			LOG.error("Error reading object {} - Message: {}", node, e.getMessage());
+			return null;
+		} finally {
+			building.remove(node);
+			reading.pop();
+			// The instance referencing the child is stale once the child is, so it depends on what the child was read from
+			depends(dependencies);
+		}
+	}
+
+	/**
+	 * Instance of a referenced resource carrying its uri only
+	 */
+	private Object stub(Node node, PropertyMapping mapping) {
+		Key key = new Key(mapping.getTargetType(), node, STUB, STUB);
+		Object object = share ? children.get(key) : null;
+		if (object == null && identityMap != null) {
+			object = identityMap.get(mapping.getTargetType(), name(node), 0);
+			if (object != null) {
+				depends(identityMap.getDependencies(mapping.getTargetType(), name(node)));
+			}
+		}
+		if (object != null) {
+			return object;
+		}
+
+		object = newStub(mapping, name(node));
+		if (share && object != null) {
+			children.put(key, object);
+		}
+		return object;
+	}
+
+	private static Object newStub(PropertyMapping mapping, String uri) {
+		try {
+			Object object = mapping.newTarget();
+			ModelManager.instance().getExecutor(mapping.getTargetType()).invokeSetName(object, uri);
+			return object;
+		} catch (ReflectiveOperationException e) {
+			LOG.error("Error reading object {} - Message: {}", uri, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Proxy of a referenced resource, read from the model store on first use
+	 */
+	private Object proxy(Node node, PropertyMapping mapping) {
+		Key key = new Key(mapping.getTargetType(), node, PROXY, PROXY);
+		Object object = share ? children.get(key) : null;
+		if (object == null && identityMap != null) {
+			object = identityMap.get(mapping.getTargetType(), name(node), 0);
+			if (object != null) {
+				depends(identityMap.getDependencies(mapping.getTargetType(), name(node)));
+			}
+		}
+		if (object != null) {
+			return object;
+		}
+
+		lazy = true;
+		Class<?> type = mapping.getTargetType();
+		String uri = name(node);
+		OntologyVariables variables = ontologyVariables;
+		FetchStrategy loadStrategy = explicit ? strategy : null;
+		object = LazyReferences.create(type, modelManager.getExecutor(type).getNameField(), uri, () -> {
+			List<?> loaded = variables.getModelStore().read(current ->
+					new BatchHydrator(current, variables, loadStrategy).hydrateNodes(Collections.singletonList(node), type));
+			return loaded.isEmpty() ? newStub(mapping, uri) : loaded.get(0);
+		});
+		if (share) {
+			children.put(key, object);
+		}
+		return object;
+	}
+
+	/**
+	 * Instance of the unit of work read less deep, to fill again
+	 */
+	private <O> O reuse(Class<O> type, Node node) {
+		return identityMap == null ? null : type.cast(identityMap.peek(type, name(node)));
+	}
+
+	/**
+	 * Depth of an eager read, compared to a lazy read whose strength is 1
+	 */
+	private static int strength(int remaining) {
+		return remaining * 2;
+	}
+
+	/**
+	 * Record resources the instances being built were read from
+	 */
+	private void depends(Collection<Node> nodes) {
+		if (!reading.isEmpty()) {
+			reading.peek().addAll(nodes);
+		}
+	}
+
+	private List<Triple> statements(Node node) {
+		return statements.computeIfAbsent(node, key -> graph.find(key, Node.ANY, Node.ANY).toList());
+	}
+
+	private String name(Node node) {
+		return model.wrapAsResource(node).toString();
+	}
+
+	private static boolean isReference(PropertyMapping mapping) {
+		return mapping.getKind() == MappingPlan.Kind.LIST || mapping.getKind() == MappingPlan.Kind.REFERENCE;
+	}
+
+	private static final class Key {
+		private final Class<?> type;
+		private final Node node;
+		private final int remaining;
+		private final int level;
+
+		Key(Class<?> type, Node node, int remaining, int level) {
+			this.type = type;
+			this.node = node;
+			this.remaining = remaining;
+			this.level = level;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+			return type == other.type && node.equals(other.node) && remaining == other.remaining && level == other.level;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, node, remaining, level);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package vn.lanhoang.ontology;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import vn.lanhoang.ontology.fixture.Benchmarks;
+import vn.lanhoang.ontology.fixture.Program;
+import vn.lanhoang.ontology.fixture.Subject;
+
+/**
+ * Cost of a registry lookup on the request path, from 1 to 32 threads
+ */
+@EnabledIfSystemProperty(named = Benchmarks.PROPERTY, matches = "true")
+class ModelManagerBenchmark {
+
+	private static final int LOOKUPS = 5_000_000;
+
+	@Test
+	void lookupCost() throws Exception {
+		ModelManager manager = ModelManager.instance();
+		Class<?>[] types = { Subject.class, Program.class };
+		for (Class<?> type : types) {
+			manager.register(type);
+		}
+
+		for (int threads = 1; threads <= 32; threads *= 2) {
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			try {
+				// First round warms up
+				for (int round = 0; round < 2; round++) {
+					List<Future<Integer>> results = new ArrayList<>();
+					long start = System.nanoTime();
+					for (int i = 0; i < threads; i++) {
+						results.add(pool.submit(() -> {
+							int found = 0;
+							for (int n = 0; n < LOOKUPS; n++) {
+								if (manager.getExecutor(types[n & 1]) != null) {
+									found++;
+								}
+							}
+							return found;
+						}));
+					}
+					for (Future<Integer> result : results) {
+						result.get();
+					}
+					long elapsed = System.nanoTime() - start;
+					if (round == 1) {
+						System.out.printf("getExecutor %2d threads: %6.1f ns per lookup and thread, %8.1f M lookups/s%n", threads,
+								(double) elapsed / LOOKUPS,
+								(long) LOOKUPS * threads * 1000.0 / elapsed);
+					}
+				}
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package vn.lanhoang.ontology;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import vn.lanhoang.ontology.annotation.Name;
+import vn.lanhoang.ontology.annotation.OntologyObject;
+
+class ModelManagerTest {
+
+	@Test
+	void concurrentRegistrationCreatesOneExecutor() throws Exception {
+		int threads = 16;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<IModelExecutor>> results = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				results.add(pool.submit(() -> {
+					start.await();
+					return ModelManager.instance().getExecutor(Registered.class);
+				}));
+			}
+			start.countDown();
+
+			IModelExecutor first = results.get(0).get();
+			assertThat(first).isNotNull();
+			for (Future<IModelExecutor> result : results) {
+				assertThat(result.get()).isSameAs(first);
+			}
+			assertThat(ModelManager.instance().getExecutors().get(Registered.class)).isSameAs(first);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void plainClassesAreNotRegistered() {
+		assertThat(ModelManager.instance().getExecutor(String.class)).isNull();
+		assertThat(ModelManager.instance().getExecutors()).doesNotContainKey(String.class);
+	}
+
+	@OntologyObject(uri = "Registered")
+	public static class Registered {
+		@Name
+		private String id;
+
+		public String getId() {
+			return id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+	}
+}
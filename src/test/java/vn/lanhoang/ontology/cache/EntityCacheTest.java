@@ -0,0 +1,76 @@
+package vn.lanhoang.ontology.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.fixture.Program;
+import vn.lanhoang.ontology.fixture.ProgramRepository;
+import vn.lanhoang.ontology.fixture.Subject;
+import vn.lanhoang.ontology.fixture.SubjectRepository;
+
+class EntityCacheTest {
+
+	@TempDir
+	Path dir;
+
+	private OntologyVariables variables;
+	private SubjectRepository subjects;
+	private ProgramRepository programs;
+
+	@BeforeEach
+	void setUp() {
+		variables = Ontologies.variables(dir);
+		variables.setEntityCacheSize(100);
+		subjects = new SubjectRepository(variables);
+		programs = new ProgramRepository(variables);
+	}
+
+	@AfterEach
+	void tearDown() {
+		variables.close();
+	}
+
+	@Test
+	void cachedReadsKeepValuesAsRead() {
+		Subject subject = new Subject();
+		subject.setId("s9");
+		subject.setName("x^^y");
+		subject.setCredit(2.5);
+		subjects.save(subject);
+
+		Subject first = subjects.findByUriTag("s9").get();
+		Subject second = subjects.findByUriTag("s9").get();
+
+		assertThat(variables.getEntityCache().getHits()).isPositive();
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.getName()).isEqualTo("x^^y");
+		assertThat(second.getCredit()).isEqualTo(2.5);
+	}
+
+	@Test
+	void changesToAReturnedEntityDoNotReachTheCache() {
+		subjects.findByUriTag("s1").get().getHasProgram().setName("Changed");
+
+		assertThat(subjects.findByUriTag("s1").get().getHasProgram().getName()).isEqualTo("Computer Science");
+	}
+
+	@Test
+	void savingAReferencedEntityInvalidatesItsParents() {
+		assertThat(subjects.findByUriTag("s1").get().getHasProgram().getName()).isEqualTo("Computer Science");
+
+		Program program = new Program();
+		program.setId("p0");
+		program.setName("Informatics");
+		programs.save(program);
+
+		assertThat(subjects.findByUriTag("s1").get().getHasProgram().getName()).isEqualTo("Informatics");
+	}
+}
@@ -0,0 +1,89 @@
+package vn.lanhoang.ontology.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.fixture.Program;
+import vn.lanhoang.ontology.fixture.ProgramRepository;
+import vn.lanhoang.ontology.fixture.Subject;
+import vn.lanhoang.ontology.fixture.SubjectRepository;
+
+class IdentityMapTest {
+
+	@TempDir
+	Path dir;
+
+	private OntologyVariables variables;
+	private SubjectRepository subjects;
+	private ProgramRepository programs;
+
+	@BeforeEach
+	void setUp() {
+		variables = Ontologies.variables(dir);
+		subjects = new SubjectRepository(variables);
+		programs = new ProgramRepository(variables);
+	}
+
+	@AfterEach
+	void tearDown() {
+		variables.close();
+	}
+
+	@Test
+	void evictsInstancesReadFromAChangedResource() {
+		try (IdentityMap identityMap = IdentityMap.open()) {
+			Object parent = new Object();
+			identityMap.put(Subject.class, "s0", parent, 2, Arrays.asList(node("s0"), node("p0")), 0);
+			identityMap.put(Program.class, "p1", new Object(), 2, Collections.singleton(node("p1")), 0);
+
+			identityMap.evict(Ontologies.BASE_URI + "p0");
+
+			assertThat(identityMap.get(Subject.class, "s0", 0)).isNull();
+			assertThat(identityMap.get(Program.class, "p1", 0)).isNotNull();
+		}
+	}
+
+	@Test
+	void readsInAUnitOfWorkReturnTheSameInstance() {
+		try (IdentityMap identityMap = IdentityMap.open()) {
+			Subject first = subjects.findByUriTag("s0").get();
+
+			assertThat(subjects.findByUriTag("s0").get()).isSameAs(first);
+			assertThat(subjects.find()).contains(first);
+			assertThat(identityMap.getHits()).isPositive();
+			assertThat(identityMap.getBuilds()).isPositive();
+		}
+	}
+
+	@Test
+	void savingAReferencedEntityRefreshesItsParents() {
+		try (IdentityMap identityMap = IdentityMap.open()) {
+			assertThat(subjects.findByUriTag("s1").get().getHasProgram().getName()).isEqualTo("Computer Science");
+
+			// Another instance than the one the unit of work shares
+			Program program = new Program();
+			program.setId("p0");
+			program.setName("Informatics");
+			programs.save(program);
+
+			assertThat(identityMap.getEvictions()).isPositive();
+			assertThat(subjects.findByUriTag("s1").get().getHasProgram().getName()).isEqualTo("Informatics");
+		}
+	}
+
+	private static Node node(String name) {
+		return NodeFactory.createURI(Ontologies.BASE_URI + name);
+	}
+}
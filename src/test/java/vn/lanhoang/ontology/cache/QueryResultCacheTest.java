@@ -0,0 +1,63 @@
+package vn.lanhoang.ontology.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.fixture.Subject;
+import vn.lanhoang.ontology.fixture.SubjectRepository;
+
+class QueryResultCacheTest {
+
+	@TempDir
+	Path dir;
+
+	private OntologyVariables variables;
+	private SubjectRepository subjects;
+
+	@BeforeEach
+	void setUp() {
+		variables = Ontologies.variables(dir);
+		variables.setQueryResultCacheSize(100);
+		subjects = new SubjectRepository(variables);
+	}
+
+	@AfterEach
+	void tearDown() {
+		variables.close();
+	}
+
+	@Test
+	void groupsCanNotBeChangedByCallers() {
+		String p0 = Ontologies.BASE_URI + "p0";
+		Map<String, List<String>> miss = subjects.groupSubjects("hasProgram");
+		Map<String, List<String>> hit = subjects.groupSubjects("hasProgram");
+
+		assertThatThrownBy(() -> miss.get(p0).clear()).isInstanceOf(UnsupportedOperationException.class);
+		assertThatThrownBy(() -> hit.get(p0).clear()).isInstanceOf(UnsupportedOperationException.class);
+		assertThatThrownBy(() -> miss.remove(p0)).isInstanceOf(UnsupportedOperationException.class);
+		assertThat(subjects.groupSubjects("hasProgram").get(p0))
+			.containsExactlyInAnyOrder(Ontologies.BASE_URI + "s0", Ontologies.BASE_URI + "s1");
+	}
+
+	@Test
+	void writesInvalidateGroups() {
+		String p1 = Ontologies.BASE_URI + "p1";
+		assertThat(subjects.groupSubjects("hasProgram").get(p1)).hasSize(2);
+
+		subjects.remove("s2");
+
+		assertThat(subjects.groupSubjects("hasProgram").get(p1)).containsExactly(Ontologies.BASE_URI + "e0");
+		assertThat(subjects.groupBy("hasProgram").get(p1)).extracting(Subject::getName).containsExactly("Astronomy");
+	}
+}
@@ -0,0 +1,52 @@
+package vn.lanhoang.ontology.configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.storage.ModelHolder;
+import vn.lanhoang.ontology.storage.SnapshotFormat;
+import vn.lanhoang.ontology.storage.StorageMode;
+import vn.lanhoang.ontology.storage.TdbModelStore;
+
+class OntologyVariablesTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void storeFollowsTheStorageSettings() {
+		OntologyVariables variables = Ontologies.variables(dir);
+		variables.setStorageMode(StorageMode.TDB2);
+		variables.setTdbLocation(dir.resolve("tdb").toString());
+		try {
+			assertThat(variables.getModelStore()).isInstanceOf(TdbModelStore.class);
+			boolean imported = variables.getModelStore().read(model -> model.containsResource(model.getResource(Ontologies.BASE_URI + "s0")));
+			assertThat(imported).isTrue();
+		} finally {
+			variables.close();
+		}
+	}
+
+	@Test
+	void storageSettingsCanNotChangeOnceTheStoreExists() {
+		OntologyVariables variables = Ontologies.variables(dir);
+		try {
+			assertThat(variables.getModelStore()).isInstanceOf(ModelHolder.class);
+
+			assertThatThrownBy(() -> variables.setStorageMode(StorageMode.TDB2)).isInstanceOf(IllegalStateException.class);
+			assertThatThrownBy(() -> variables.setSnapshotFormat(SnapshotFormat.THRIFT)).isInstanceOf(IllegalStateException.class);
+			assertThatThrownBy(() -> variables.setCheckpointInterval(5L)).isInstanceOf(IllegalStateException.class);
+			assertThatThrownBy(() -> variables.setPath("other.owl")).isInstanceOf(IllegalStateException.class);
+			// Settings read on every call can still change
+			variables.setQueryCacheSize(10);
+		} finally {
+			variables.close();
+		}
+	}
+}
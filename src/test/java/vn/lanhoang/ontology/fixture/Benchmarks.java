@@ -0,0 +1,61 @@
+package vn.lanhoang.ontology.fixture;
+
+import java.util.Arrays;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.vocabulary.RDF;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+
+/**
+ * Helpers of the benchmarks, which only run with {@code -Dbenchmark=true}
+ * and print their results instead of asserting on them.
+ */
+public final class Benchmarks {
+
+	public static final String PROPERTY = "benchmark";
+
+	private Benchmarks() {
+	}
+
+	/**
+	 * Add generated subjects to the store in one write
+	 *
+	 * @param variables Variables of the store
+	 * @param count Number of subjects, named g0 to g(count - 1)
+	 */
+	public static void addSubjects(OntologyVariables variables, int count) {
+		String base = Ontologies.BASE_URI;
+		variables.getModelStore().update(model -> {
+			for (int i = 0; i < count; i++) {
+				addSubject(model, base, i);
+			}
+		});
+	}
+
+	/**
+	 * @param model Model the triples are added to
+	 * @param base Base uri
+	 * @param i Number of the subject
+	 */
+	public static void addSubject(Model model, String base, int i) {
+		model.createResource(base + "g" + i)
+			.addProperty(RDF.type, model.createResource(base + "Subject"))
+			.addProperty(model.createProperty(base + "name"), "Generated " + i)
+			.addLiteral(model.createProperty(base + "credit"), (double) (i % 5))
+			.addProperty(model.createProperty(base + "hasProgram"), model.createResource(base + "p" + (i % 2)));
+	}
+
+	/**
+	 * Print p50, p99 and the mean of measured durations
+	 *
+	 * @param name Name of the measure
+	 * @param nanos Durations in nanoseconds, sorted in place
+	 */
+	public static void report(String name, long[] nanos) {
+		Arrays.sort(nanos);
+		double mean = Arrays.stream(nanos).average().orElse(0);
+		System.out.printf("%-40s p50 %10.1f us  p99 %10.1f us  mean %10.1f us%n", name,
+				nanos[nanos.length / 2] / 1000.0, nanos[(int) (nanos.length * 0.99)] / 1000.0, mean / 1000.0);
+	}
+}
@@ -0,0 +1,67 @@
+package vn.lanhoang.ontology.fixture;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+
+/**
+ * Test ontology: programs p0 and p1, subjects s0 to s2 and the elective e0,
+ * copied to a temporary directory since writes go next to the file.
+ */
+public final class Ontologies {
+
+	public static final String BASE_URI = "http://test.org/onto#";
+	public static final String PREFFIXES = "PREFIX rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#>\n"
+			+ "PREFIX owl: <http://www.w3.org/2002/07/owl#>\n"
+			+ "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>\n"
+			+ "PREFIX xsd: <http://www.w3.org/2001/XMLSchema#>\n"
+			+ "PREFIX t: <" + BASE_URI + ">\n";
+
+	private Ontologies() {
+	}
+
+	/**
+	 * @param dir Directory the ontology is copied to
+	 * @return Path of the copy
+	 */
+	public static Path copy(Path dir) {
+		Path path = dir.resolve("ontology.owl");
+		try (InputStream in = Ontologies.class.getResourceAsStream("/ontology.owl")) {
+			Files.copy(in, path);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return path;
+	}
+
+	/**
+	 * Variables over a copy of the test ontology, checkpoints only run on close
+	 *
+	 * @param dir Directory the ontology is copied to
+	 * @return OntologyVariables, the store is not created yet
+	 */
+	public static OntologyVariables variables(Path dir) {
+		return variables(copy(dir).toString());
+	}
+
+	/**
+	 * @param path Ontology file
+	 * @return OntologyVariables, the store is not created yet
+	 */
+	public static OntologyVariables variables(String path) {
+		OntologyVariables variables = new OntologyVariables();
+		variables.setBaseUri(BASE_URI);
+		variables.setPath(path);
+		variables.setMaxNestedCount(5);
+		variables.setPreffix("t:");
+		variables.setPreffixes(PREFFIXES);
+		variables.setCheckpointInterval(0L);
+
+		return variables;
+	}
+}
@@ -0,0 +1,47 @@
+package vn.lanhoang.ontology.fixture;
+
+import java.util.List;
+
+import vn.lanhoang.ontology.annotation.Name;
+import vn.lanhoang.ontology.annotation.OntologyObject;
+
+@OntologyObject(uri = "Program")
+public class Program {
+	@Name
+	private String id;
+	private String name;
+	private Integer year;
+	private List<Program> related;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public Integer getYear() {
+		return year;
+	}
+
+	public void setYear(Integer year) {
+		this.year = year;
+	}
+
+	public List<Program> getRelated() {
+		return related;
+	}
+
+	public void setRelated(List<Program> related) {
+		this.related = related;
+	}
+}
@@ -0,0 +1,56 @@
+package vn.lanhoang.ontology.fixture;
+
+import java.util.List;
+
+import vn.lanhoang.ontology.annotation.Name;
+import vn.lanhoang.ontology.annotation.OntologyObject;
+
+@OntologyObject(uri = "Subject")
+public class Subject {
+	@Name
+	private String id;
+	private String name;
+	private Double credit;
+	private Program hasProgram;
+	private List<Program> relatedPrograms;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public Double getCredit() {
+		return credit;
+	}
+
+	public void setCredit(Double credit) {
+		this.credit = credit;
+	}
+
+	public Program getHasProgram() {
+		return hasProgram;
+	}
+
+	public void setHasProgram(Program hasProgram) {
+		this.hasProgram = hasProgram;
+	}
+
+	public List<Program> getRelatedPrograms() {
+		return relatedPrograms;
+	}
+
+	public void setRelatedPrograms(List<Program> relatedPrograms) {
+		this.relatedPrograms = relatedPrograms;
+	}
+}
@@ -0,0 +1,12 @@
+package vn.lanhoang.ontology.fixture;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.repository.OntologyRepository;
+
+public class SubjectRepository extends OntologyRepository<Subject> {
+
+	public SubjectRepository(OntologyVariables ontologyVariables) {
+		setOntologyVariables(ontologyVariables);
+		init();
+	}
+}
@@ -0,0 +1,103 @@
+package vn.lanhoang.ontology.model.query;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.fixture.Benchmarks;
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.fixture.Program;
+import vn.lanhoang.ontology.fixture.ProgramRepository;
+import vn.lanhoang.ontology.fixture.Subject;
+import vn.lanhoang.ontology.fixture.SubjectRepository;
+
+class QueryParserTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void putsEqualitiesFirstAndKeepsConditionOrder() {
+		QueryContainer container = container(Operator.AND,
+				condition("CONTAINS", "t:name", "algo"),
+				condition("EQUALS", "t:credit", "3.0"),
+				condition("EQUALS", "t:name", "Algorithms"));
+
+		String query = new QueryParser(Ontologies.BASE_URI, "t:").parse(container);
+
+		int credit = query.indexOf("onto#credit");
+		int name = query.indexOf("\"Algorithms\"");
+		int contains = query.indexOf("?v1");
+		assertThat(credit).isPositive().isLessThan(name);
+		assertThat(name).isLessThan(contains);
+		assertThat(query).contains("DISTINCT").contains("regex");
+	}
+
+	@Test
+	void queryDoesNotDependOnTheData() {
+		QueryContainer container = container(Operator.AND,
+				condition("EQUALS", "t:credit", "3.0"),
+				condition("CONTAINS", "t:name", "a"));
+		container.setQueries(Collections.singletonList(container(Operator.OR,
+				condition("EQUALS", "t:hasProgram", "p0"),
+				condition("EQUALS", "t:name", "Databases"))));
+
+		OntologyVariables variables = Ontologies.variables(dir);
+		try {
+			String before = new QueryParser(variables).parse(container);
+			Benchmarks.addSubjects(variables, 500);
+
+			assertThat(new QueryParser(variables).parse(container)).isEqualTo(before);
+			assertThat(new QueryParser(Ontologies.BASE_URI, "t:").parse(container)).isEqualTo(before);
+			assertThat(before).contains("UNION");
+		} finally {
+			variables.close();
+		}
+	}
+
+	@Test
+	void parsedQueriesRunOnTheRepository() {
+		OntologyVariables variables = Ontologies.variables(dir);
+		try {
+			SubjectRepository subjects = new SubjectRepository(variables);
+			QueryParser parser = new QueryParser(variables);
+
+			assertThat(subjects.query(parser.parse(container(Operator.AND,
+					condition("CONTAINS", "t:name", "CALC"))))).extracting(Subject::getName).containsExactly("Calculus");
+			assertThat(subjects.query(parser.parse(container(Operator.OR,
+					condition("EQUALS", "t:name", "Databases"),
+					condition("EQUALS", "t:name", "Astronomy"))))).extracting(Subject::getName)
+				.containsExactlyInAnyOrder("Databases", "Astronomy");
+			assertThat(subjects.query(container(Operator.AND,
+					condition("EQUALS", "t:credit", "3.0"),
+					condition("CONTAINS", "t:name", "a")))).extracting(Subject::getName)
+				.containsExactlyInAnyOrder("Algorithms", "Calculus");
+			assertThat(new ProgramRepository(variables).query(container(Operator.AND,
+					condition("CONTAINS", "t:name", "a")))).extracting(Program::getName)
+				.containsExactlyInAnyOrder("Mathematics");
+		} finally {
+			variables.close();
+		}
+	}
+
+	private static QueryContainer container(Operator operator, QueryDTO... conditions) {
+		QueryContainer container = new QueryContainer();
+		container.setOperator(operator);
+		container.setConditions(Arrays.asList(conditions));
+		return container;
+	}
+
+	private static QueryDTO condition(String condition, String predicate, String object) {
+		QueryDTO dto = new QueryDTO();
+		dto.setCondition(condition);
+		dto.setPredicate(predicate);
+		dto.setObject(object);
+		return dto;
+	}
+}
@@ -0,0 +1,83 @@
+package vn.lanhoang.ontology.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.fixture.Subject;
+import vn.lanhoang.ontology.fixture.SubjectRepository;
+
+class ConcurrentAccessTest {
+
+	private static final int THREADS = 8;
+	private static final int SAVES = 25;
+
+	@TempDir
+	Path dir;
+
+	private OntologyVariables variables;
+	private SubjectRepository subjects;
+
+	@BeforeEach
+	void setUp() {
+		variables = Ontologies.variables(dir);
+		subjects = new SubjectRepository(variables);
+	}
+
+	@AfterEach
+	void tearDown() {
+		variables.close();
+	}
+
+	@Test
+	void concurrentSavesAreAllKeptWhileReadersRun() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS * 2);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				int thread = t;
+				results.add(pool.submit(() -> {
+					start.await();
+					for (int i = 0; i < SAVES; i++) {
+						Subject subject = new Subject();
+						subject.setId("c" + thread + "_" + i);
+						subject.setName("Concurrent " + thread + " " + i);
+						subjects.save(subject);
+					}
+					return null;
+				}));
+				results.add(pool.submit(() -> {
+					start.await();
+					for (int i = 0; i < SAVES; i++) {
+						// Every read sees a whole write, the original subjects are always there
+						assertThat(subjects.find()).extracting(Subject::getName).contains("Algorithms", "Astronomy");
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		assertThat(subjects.count()).isEqualTo(4 + THREADS * SAVES);
+		assertThat(subjects.findByUriTag("c3_7")).get().extracting(Subject::getName).isEqualTo("Concurrent 3 7");
+	}
+}
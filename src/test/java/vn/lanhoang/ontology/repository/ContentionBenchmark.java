@@ -0,0 +1,98 @@
+package vn.lanhoang.ontology.repository;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.fixture.Benchmarks;
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.fixture.Subject;
+import vn.lanhoang.ontology.fixture.SubjectRepository;
+
+/**
+ * Throughput of point reads with 1 to 32 threads, alone and with one thread
+ * in ten writing
+ */
+@EnabledIfSystemProperty(named = Benchmarks.PROPERTY, matches = "true")
+class ContentionBenchmark {
+
+	private static final int SUBJECTS = 10_000;
+	private static final long MILLIS = 2_000;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void throughput() throws Exception {
+		OntologyVariables variables = Ontologies.variables(dir);
+		try {
+			Benchmarks.addSubjects(variables, SUBJECTS);
+			SubjectRepository subjects = new SubjectRepository(variables);
+
+			// Warm up
+			run(subjects, 1, 0, false);
+			for (int threads = 1; threads <= 32; threads *= 2) {
+				run(subjects, threads, 0, true);
+				run(subjects, threads, 10, true);
+			}
+		} finally {
+			variables.close();
+		}
+	}
+
+	/**
+	 * @param writeEvery Every n-th operation is a save, 0 for reads only
+	 * @param print Whether the throughput is printed
+	 */
+	private static void run(SubjectRepository subjects, int threads, int writeEvery, boolean print) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicInteger operations = new AtomicInteger();
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				results.add(pool.submit(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					int done = 0;
+					while (running.get()) {
+						String id = "g" + random.nextInt(SUBJECTS);
+						if (writeEvery > 0 && done % writeEvery == 0) {
+							Subject subject = subjects.findByUriTag(id).get();
+							subject.setName("Renamed " + done);
+							subjects.save(subject);
+						} else {
+							subjects.findByUriTag(id);
+						}
+						done++;
+					}
+					operations.addAndGet(done);
+					return null;
+				}));
+			}
+			TimeUnit.MILLISECONDS.sleep(MILLIS);
+			running.set(false);
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		if (print) {
+			System.out.printf("%2d threads, %-10s %10.0f ops/s%n", threads,
+					writeEvery > 0 ? "10% writes" : "reads", operations.get() * 1000.0 / MILLIS);
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package vn.lanhoang.ontology.repository;
+
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.fixture.Benchmarks;
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.fixture.SubjectRepository;
+
+/**
+ * Point lookups through the graph against the SPARQL FILTER query they replaced
+ */
+@EnabledIfSystemProperty(named = Benchmarks.PROPERTY, matches = "true")
+class FindByUriTagBenchmark {
+
+	private static final int SUBJECTS = 20_000;
+	private static final int WARMUP = 2_000;
+	private static final int RUNS = 5_000;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void compareLookups() {
+		OntologyVariables variables = Ontologies.variables(dir);
+		try {
+			Benchmarks.addSubjects(variables, SUBJECTS);
+			SubjectRepository subjects = new SubjectRepository(variables);
+
+			measure("findByUriTag", uri -> subjects.findByUriTag(uri));
+			measure("exists(String)", uri -> subjects.exists(uri));
+			measure("SPARQL FILTER (?subject = <uri>)", uri -> filterQuery(variables, uri));
+		} finally {
+			variables.close();
+		}
+	}
+
+	private static boolean filterQuery(OntologyVariables variables, String uri) {
+		Query query = QueryFactory.create(Ontologies.PREFFIXES
+				+ "SELECT ?subject WHERE { ?subject rdf:type t:Subject FILTER (?subject = <" + uri + ">) }");
+		return variables.getModelStore().read(model -> {
+			try (QueryExecution qexec = QueryExecutionFactory.create(query, model)) {
+				return qexec.execSelect().hasNext();
+			}
+		});
+	}
+
+	private static void measure(String name, Consumer<String> lookup) {
+		Random random = new Random(42);
+		for (int i = 0; i < WARMUP; i++) {
+			lookup.accept(Ontologies.BASE_URI + "g" + random.nextInt(SUBJECTS));
+		}
+
+		long[] nanos = new long[RUNS];
+		for (int i = 0; i < RUNS; i++) {
+			String uri = Ontologies.BASE_URI + "g" + random.nextInt(SUBJECTS);
+			long start = System.nanoTime();
+			lookup.accept(uri);
+			nanos[i] = System.nanoTime() - start;
+		}
+		Benchmarks.report(name, nanos);
+	}
+}
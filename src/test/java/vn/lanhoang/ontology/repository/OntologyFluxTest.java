@@ -0,0 +1,86 @@
+package vn.lanhoang.ontology.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import reactor.test.StepVerifier;
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.fixture.Benchmarks;
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.fixture.Subject;
+import vn.lanhoang.ontology.fixture.SubjectRepository;
+
+class OntologyFluxTest {
+
+	@TempDir
+	Path dir;
+
+	private OntologyVariables variables;
+	private SubjectRepository subjects;
+
+	@BeforeEach
+	void setUp() {
+		variables = Ontologies.variables(dir);
+		subjects = new SubjectRepository(variables);
+	}
+
+	@AfterEach
+	void tearDown() {
+		variables.close();
+	}
+
+	@Test
+	void emitsEveryEntityOnceInUriOrder() {
+		Benchmarks.addSubjects(variables, 25);
+
+		List<Subject> all = OntologyFlux.findAll(subjects, 4).collectList().block();
+
+		assertThat(all).hasSize((int) subjects.count());
+		assertThat(all).extracting(Subject::getId).doesNotHaveDuplicates().isSorted();
+	}
+
+	@Test
+	void readsBatchesOnDemand() {
+		Benchmarks.addSubjects(variables, 25);
+
+		StepVerifier.create(OntologyFlux.findAll(subjects, 4), 3)
+			.expectNextCount(3)
+			.thenRequest(2)
+			.expectNextCount(2)
+			.thenCancel()
+			.verify();
+	}
+
+	@Test
+	void batchesDoNotDependOnTheEntitiesEmittedBeforeThem() {
+		Benchmarks.addSubjects(variables, 25);
+		List<String> ids = subjects.find().stream().map(Subject::getId).sorted().collect(Collectors.toList());
+		List<Subject> emitted = new ArrayList<>();
+
+		StepVerifier.create(OntologyFlux.findAll(subjects, 4), 4)
+			.recordWith(() -> emitted)
+			.expectNextCount(4)
+			.then(() -> subjects.removeAll(new ArrayList<>(emitted)))
+			.thenRequest(Long.MAX_VALUE)
+			.expectNextCount(ids.size() - 4)
+			.verifyComplete();
+
+		assertThat(emitted).extracting(Subject::getId).containsExactlyElementsOf(ids);
+	}
+
+	@Test
+	void batchSizeMatchingTheCountCompletes() {
+		StepVerifier.create(OntologyFlux.findAll(subjects, 4))
+			.expectNextCount(4)
+			.verifyComplete();
+	}
+}
@@ -0,0 +1,122 @@
+package vn.lanhoang.ontology.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.fixture.Program;
+import vn.lanhoang.ontology.fixture.ProgramRepository;
+import vn.lanhoang.ontology.fixture.Subject;
+import vn.lanhoang.ontology.fixture.SubjectRepository;
+
+class OntologyRepositoryTest {
+
+	@TempDir
+	Path dir;
+
+	private String path;
+	private OntologyVariables variables;
+	private SubjectRepository subjects;
+
+	@BeforeEach
+	void setUp() {
+		path = Ontologies.copy(dir).toString();
+		variables = Ontologies.variables(path);
+		subjects = new SubjectRepository(variables);
+	}
+
+	@AfterEach
+	void tearDown() {
+		variables.close();
+	}
+
+	@Test
+	void savedReferencesSurviveCheckpoint() {
+		Program program = new Program();
+		program.setId("p1");
+		Subject subject = new Subject();
+		subject.setId("s9");
+		subject.setName("Compilers");
+		subject.setHasProgram(program);
+		subjects.save(subject);
+
+		// Checkpoints the journal into the RDF/XML file, which takes absolute uris only
+		variables.close();
+		variables = Ontologies.variables(path);
+		subjects = new SubjectRepository(variables);
+
+		Subject read = subjects.findByUriTag("s9").get();
+		assertThat(read.getName()).isEqualTo("Compilers");
+		assertThat(read.getHasProgram().getId()).isEqualTo(Ontologies.BASE_URI + "p1");
+	}
+
+	@Test
+	void findByUriTagMatchesSubclassMembersOnly() {
+		assertThat(subjects.findByUriTag("s1")).get().extracting(Subject::getName).isEqualTo("Databases");
+		assertThat(subjects.findByUriTag("e0")).get().extracting(Subject::getName).isEqualTo("Astronomy");
+		assertThat(subjects.findByUriTag("p0")).isEmpty();
+		assertThat(subjects.findByUriTag("missing")).isEmpty();
+		assertThat(subjects.exists(Ontologies.BASE_URI + "s2")).isTrue();
+		assertThat(subjects.exists("p1")).isFalse();
+	}
+
+	@Test
+	void readsShareReferencedEntities() {
+		List<Subject> all = subjects.find();
+		Subject algorithms = all.stream().filter(s -> "Algorithms".equals(s.getName())).findFirst().get();
+		Subject databases = all.stream().filter(s -> "Databases".equals(s.getName())).findFirst().get();
+
+		assertThat(algorithms.getHasProgram().getName()).isEqualTo("Computer Science");
+		assertThat(algorithms.getHasProgram()).isSameAs(databases.getHasProgram());
+		assertThat(algorithms.getRelatedPrograms()).extracting(Program::getName)
+			.containsExactlyInAnyOrder("Computer Science", "Mathematics");
+	}
+
+	@Test
+	void pageSortedByMultiValuedPropertyHasEachSubjectOnce() {
+		Page<Subject> page = subjects.find(PageRequest.of(0, 10, Sort.by("relatedPrograms")));
+
+		assertThat(ids(page.getContent())).doesNotHaveDuplicates().hasSize(4);
+		assertThat(page.getTotalElements()).isEqualTo(subjects.count());
+	}
+
+	@Test
+	void pageOfSingleClassSortedByMultiValuedPropertyHasEachSubjectOnce() {
+		ProgramRepository programs = new ProgramRepository(variables);
+		Page<Program> page = programs.find(PageRequest.of(0, 10, Sort.by("related")));
+
+		assertThat(page.getContent()).extracting(Program::getId).doesNotHaveDuplicates().hasSize(2);
+		assertThat(page.getTotalElements()).isEqualTo(programs.count());
+	}
+
+	@Test
+	void pagesFollowTheSort() {
+		Sort sort = Sort.by(Sort.Order.desc("credit"), Sort.Order.asc("name"));
+		Page<Subject> first = subjects.find(PageRequest.of(0, 2, sort));
+		Page<Subject> second = subjects.find(PageRequest.of(1, 2, sort));
+
+		assertThat(names(first.getContent())).containsExactly("Databases", "Algorithms");
+		assertThat(names(second.getContent())).containsExactly("Calculus", "Astronomy");
+		assertThat(second.getTotalElements()).isEqualTo(4);
+	}
+
+	private static List<String> ids(List<Subject> list) {
+		return list.stream().map(Subject::getId).collect(Collectors.toList());
+	}
+
+	private static List<String> names(List<Subject> list) {
+		return list.stream().map(Subject::getName).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,151 @@
+package vn.lanhoang.ontology.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mapping.PropertyReferenceException;
+
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.fixture.Program;
+import vn.lanhoang.ontology.fixture.Subject;
+import vn.lanhoang.ontology.fixture.SubjectRepository;
+
+class PartTreeQueryTest {
+
+	public interface DerivedQueries {
+		List<Subject> findByNameAndHasProgram(String name, Program program);
+
+		List<Subject> findByNameOrCredit(String name, Double credit);
+
+		List<Subject> findByHasProgramNameOrderByNameAsc(String programName);
+
+		List<Subject> findTop2ByCreditGreaterThanOrderByNameDesc(double credit);
+
+		List<Subject> findByCreditBetween(double from, double to);
+
+		List<Subject> findByNameStartingWithIgnoreCase(String prefix);
+
+		List<Subject> findByNameContaining(String part);
+
+		List<Subject> findByRelatedProgramsIsNull();
+
+		Optional<Subject> findById(String id);
+
+		long countByHasProgram(Program program);
+
+		boolean existsByName(String name);
+	}
+
+	public interface UnknownProperty {
+		List<Subject> findByTitle(String title);
+	}
+
+	public interface MissingParameter {
+		List<Subject> findByNameAndCredit(String name);
+	}
+
+	public interface WrongReturnType {
+		List<Subject> countByName(String name);
+	}
+
+	@TempDir
+	Path dir;
+
+	private OntologyVariables variables;
+	private SubjectRepository subjects;
+	private DerivedQueries queries;
+
+	@BeforeEach
+	void setUp() {
+		variables = Ontologies.variables(dir);
+		subjects = new SubjectRepository(variables);
+		queries = QueryMethods.create(DerivedQueries.class, subjects);
+	}
+
+	@AfterEach
+	void tearDown() {
+		variables.close();
+	}
+
+	@Test
+	void parsesProjectionLimitAndOrder() throws NoSuchMethodException {
+		PartTreeQuery top = parse("findTop2ByCreditGreaterThanOrderByNameDesc", double.class);
+		assertThat(top.getLimit()).isEqualTo(2);
+		assertThat(top.getOrder()).startsWith(" DESC(");
+		assertThat(top.isCount()).isFalse();
+
+		PartTreeQuery count = parse("countByHasProgram", Program.class);
+		assertThat(count.isCount()).isTrue();
+		assertThat(count.getLimit()).isZero();
+		assertThat(count.getOrder()).isEmpty();
+
+		assertThat(parse("existsByName", String.class).isExists()).isTrue();
+	}
+
+	@Test
+	void bindsNameParametersAsUris() throws NoSuchMethodException {
+		assertThat(parse("findById", String.class).getUris()).containsExactly(true);
+		assertThat(parse("findByNameAndHasProgram", String.class, Program.class).getUris()).containsExactly(false, false);
+	}
+
+	@Test
+	void orBranchesAreUnionMembersWithTheClassPattern() throws NoSuchMethodException {
+		String where = parse("findByNameOrCredit", String.class, Double.class).getWhere(" CLASS ");
+
+		assertThat(where).contains(" UNION ");
+		assertThat(where.split("CLASS", -1)).hasSize(3);
+	}
+
+	@Test
+	void rejectsNamesThatDoNotFitTheEntity() {
+		assertThatThrownBy(() -> parse(UnknownProperty.class, "findByTitle", String.class))
+			.isInstanceOf(PropertyReferenceException.class);
+		assertThatThrownBy(() -> parse(MissingParameter.class, "findByNameAndCredit", String.class))
+			.isInstanceOf(IllegalArgumentException.class).hasMessageContaining("more are expected");
+		assertThatThrownBy(() -> QueryMethods.create(WrongReturnType.class, subjects))
+			.isInstanceOf(IllegalStateException.class).hasMessageContaining("does not match its name");
+	}
+
+	@Test
+	void derivedMethodsSelectTheEntities() {
+		assertThat(queries.findByNameAndHasProgram("Algorithms", QueryMethodsTest.program("p0")))
+			.extracting(Subject::getName).containsExactly("Algorithms");
+		assertThat(queries.findByNameOrCredit("Databases", 2.0))
+			.extracting(Subject::getName).containsExactlyInAnyOrder("Databases", "Astronomy");
+		assertThat(queries.findByHasProgramNameOrderByNameAsc("Mathematics"))
+			.extracting(Subject::getName).containsExactly("Astronomy", "Calculus");
+		assertThat(queries.findTop2ByCreditGreaterThanOrderByNameDesc(2.5))
+			.extracting(Subject::getName).containsExactly("Databases", "Calculus");
+		assertThat(queries.findByCreditBetween(2.5, 3.5))
+			.extracting(Subject::getName).containsExactlyInAnyOrder("Algorithms", "Calculus");
+		assertThat(queries.findByNameStartingWithIgnoreCase("al"))
+			.extracting(Subject::getName).containsExactly("Algorithms");
+		assertThat(queries.findByNameContaining("a"))
+			.extracting(Subject::getName).containsExactlyInAnyOrder("Databases", "Calculus");
+		assertThat(queries.findByRelatedProgramsIsNull())
+			.extracting(Subject::getName).containsExactly("Astronomy");
+		assertThat(queries.findById("s2")).get().extracting(Subject::getName).isEqualTo("Calculus");
+		assertThat(queries.countByHasProgram(QueryMethodsTest.program("p1"))).isEqualTo(2);
+		assertThat(queries.existsByName("Calculus")).isTrue();
+		assertThat(queries.existsByName("Physics")).isFalse();
+	}
+
+	private static PartTreeQuery parse(String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+		return parse(DerivedQueries.class, name, parameterTypes);
+	}
+
+	private static PartTreeQuery parse(Class<?> queries, String name, Class<?>... parameterTypes) throws NoSuchMethodException {
+		Method method = queries.getMethod(name, parameterTypes);
+		return new PartTreeQuery(method, Subject.class, Ontologies.BASE_URI);
+	}
+}
@@ -0,0 +1,118 @@
+package vn.lanhoang.ontology.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.annotation.SParam;
+import vn.lanhoang.ontology.annotation.SQuery;
+import vn.lanhoang.ontology.configuration.OntologyVariables;
+import vn.lanhoang.ontology.fixture.Ontologies;
+import vn.lanhoang.ontology.fixture.Program;
+import vn.lanhoang.ontology.fixture.Subject;
+import vn.lanhoang.ontology.fixture.SubjectRepository;
+
+class QueryMethodsTest {
+
+	public interface SubjectQueries {
+		@SQuery(where = "?arg0 t:hasProgram ?arg1")
+		List<Subject> byProgram(Program program);
+
+		@SQuery(where = "?arg0 t:hasProgram ?arg2 . ?arg0 t:name ?arg1")
+		Optional<Subject> byNameAndProgram(String name, @SParam(index = 2) Program program);
+
+		@SQuery(where = "?arg0 t:name ?arg1")
+		boolean existsWithName(String name);
+
+		@SQuery(where = "?arg0 t:hasProgram ?arg1")
+		int countInProgram(Program program);
+
+		default List<Subject> inComputerScience() {
+			return byProgram(program("p0"));
+		}
+
+		default String describe(String name) {
+			return existsWithName(name) ? name + " exists" : name + " is missing";
+		}
+	}
+
+	public interface Broken {
+		@SQuery(where = "?arg0 t:name ?arg1 . ?arg0 t:credit ?arg2")
+		List<Subject> usesUnboundArg(String name);
+	}
+
+	public interface Unparsable {
+		@SQuery(where = "?arg0 t:name")
+		List<Subject> invalid();
+	}
+
+	@TempDir
+	Path dir;
+
+	private OntologyVariables variables;
+	private SubjectRepository subjects;
+	private SubjectQueries queries;
+
+	@BeforeEach
+	void setUp() {
+		variables = Ontologies.variables(dir);
+		subjects = new SubjectRepository(variables);
+		queries = QueryMethods.create(SubjectQueries.class, subjects);
+	}
+
+	@AfterEach
+	void tearDown() {
+		variables.close();
+	}
+
+	@Test
+	void bindsParametersInOrderOrByIndex() {
+		assertThat(queries.byProgram(program("p1"))).extracting(Subject::getName)
+			.containsExactlyInAnyOrder("Calculus", "Astronomy");
+		assertThat(queries.byNameAndProgram("Algorithms", program("p0"))).get()
+			.extracting(Subject::getId).isEqualTo(Ontologies.BASE_URI + "s0");
+		assertThat(queries.byNameAndProgram("Algorithms", program("p1"))).isEmpty();
+	}
+
+	@Test
+	void countsAndChecksExistence() {
+		assertThat(queries.countInProgram(program("p0"))).isEqualTo(2);
+		assertThat(queries.existsWithName("Databases")).isTrue();
+		assertThat(queries.existsWithName("Physics")).isFalse();
+	}
+
+	@Test
+	void defaultMethodsRunTheirBody() {
+		assertThat(queries.inComputerScience()).extracting(Subject::getName)
+			.containsExactlyInAnyOrder("Algorithms", "Databases");
+		assertThat(queries.describe("Physics")).isEqualTo("Physics is missing");
+	}
+
+	@Test
+	void objectMethodsWorkOnTheProxy() {
+		assertThat(queries).isEqualTo(queries);
+		assertThat(queries.toString()).contains(SubjectQueries.class.getName());
+	}
+
+	@Test
+	void invalidMethodsFailWhenImplemented() {
+		assertThatThrownBy(() -> QueryMethods.create(Broken.class, subjects))
+			.isInstanceOf(IllegalStateException.class).hasMessageContaining("?arg2");
+		assertThatThrownBy(() -> QueryMethods.create(Unparsable.class, subjects))
+			.isInstanceOf(IllegalStateException.class).hasMessageContaining("invalid query");
+	}
+
+	static Program program(String id) {
+		Program program = new Program();
+		program.setId(id);
+		return program;
+	}
+}
@@ -0,0 +1,96 @@
+package vn.lanhoang.ontology.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChangeJournalTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void replaysCommittedWrites() throws IOException {
+		Triple first = triple("s0", "name", "Algorithms");
+		Triple second = triple("s1", "name", "Databases");
+		try (ChangeJournal journal = new ChangeJournal(dir.resolve("data.journal").toString())) {
+			journal.append(added(first, second));
+			ChangeSet removal = new ChangeSet();
+			removal.remove(first);
+			journal.append(removal);
+		}
+
+		Graph graph = GraphFactory.createDefaultGraph();
+		int replayed = new ChangeJournal(dir.resolve("data.journal").toString()).replay(graph);
+
+		assertThat(replayed).isEqualTo(2);
+		assertThat(graph.contains(first)).isFalse();
+		assertThat(graph.contains(second)).isTrue();
+	}
+
+	@Test
+	void discardsTornTail() throws IOException {
+		File file = dir.resolve("data.journal").toFile();
+		Triple committed = triple("s0", "name", "Algorithms");
+		try (ChangeJournal journal = new ChangeJournal(file.getPath())) {
+			journal.append(added(committed));
+		}
+		long length = file.length();
+		// A write cut short by a crash: no commit marker, last line incomplete
+		Files.write(file.toPath(), "A <http://test.org/onto#s1> <http://test.org/onto#name> \"Data".getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+
+		ChangeJournal journal = new ChangeJournal(file.getPath());
+		Graph graph = GraphFactory.createDefaultGraph();
+
+		assertThat(journal.replay(graph)).isEqualTo(1);
+		assertThat(graph.size()).isEqualTo(1);
+		assertThat(graph.contains(committed)).isTrue();
+		assertThat(file.length()).isEqualTo(length);
+
+		// Writes after the truncation are replayed as usual
+		Triple next = triple("s2", "name", "Calculus");
+		journal.append(added(next));
+		journal.close();
+		Graph replayed = GraphFactory.createDefaultGraph();
+		assertThat(new ChangeJournal(file.getPath()).replay(replayed)).isEqualTo(2);
+		assertThat(replayed.contains(next)).isTrue();
+	}
+
+	@Test
+	void resetEmptiesJournal() throws IOException {
+		ChangeJournal journal = new ChangeJournal(dir.resolve("data.journal").toString());
+		journal.append(added(triple("s0", "name", "Algorithms")));
+		assertThat(journal.size()).isPositive();
+
+		journal.reset();
+
+		assertThat(journal.size()).isZero();
+		assertThat(journal.replay(GraphFactory.createDefaultGraph())).isZero();
+	}
+
+	static Triple triple(String subject, String property, String value) {
+		return Triple.create(NodeFactory.createURI("http://test.org/onto#" + subject),
+				NodeFactory.createURI("http://test.org/onto#" + property), NodeFactory.createLiteral(value));
+	}
+
+	private static ChangeSet added(Triple... triples) {
+		ChangeSet changes = new ChangeSet();
+		for (Triple triple : triples) {
+			changes.add(triple);
+		}
+		return changes;
+	}
+}
@@ -0,0 +1,110 @@
+package vn.lanhoang.ontology.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static vn.lanhoang.ontology.storage.ChangeJournalTest.triple;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.fixture.Ontologies;
+
+class ModelHolderTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void replaysJournalOnStartup() {
+		String path = Ontologies.copy(dir).toString();
+		Triple added = triple("s9", "name", "Compilers");
+		ModelHolder holder = new ModelHolder(path, 0, Long.MAX_VALUE);
+		long size = holder.read(Model::size);
+		holder.update(model -> model.getGraph().add(added));
+		// Not closed, as after a crash
+
+		ModelHolder restarted = new ModelHolder(path, 0, Long.MAX_VALUE);
+
+		assertThat(contains(restarted, added)).isTrue();
+		assertThat(restarted.read(Model::size)).isEqualTo(size + 1);
+	}
+
+	@Test
+	void checkpointWritesFileAndEmptiesJournal() {
+		String path = Ontologies.copy(dir).toString();
+		Triple added = triple("s9", "hasProgram", "p0");
+		ModelHolder holder = new ModelHolder(path, 0, Long.MAX_VALUE);
+		holder.update(model -> model.getGraph().add(added));
+		assertThat(new File(path + ".journal").length()).isPositive();
+
+		holder.checkpoint();
+
+		assertThat(new File(path + ".journal").length()).isZero();
+		Model written = ModelFactory.createDefaultModel();
+		RDFDataMgr.read(written, path);
+		assertThat(written.getGraph().contains(added)).isTrue();
+	}
+
+	@Test
+	void failedWriteIsRolledBack() {
+		String path = Ontologies.copy(dir).toString();
+		Triple added = triple("s9", "name", "Compilers");
+		Triple removed = triple("s0", "name", "Algorithms");
+		ModelHolder holder = new ModelHolder(path, 0, Long.MAX_VALUE);
+		assertThat(contains(holder, removed)).isTrue();
+		try {
+			holder.update(model -> {
+				model.getGraph().add(added);
+				model.getGraph().delete(removed);
+				throw new IllegalStateException("failed");
+			});
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		assertThat(contains(holder, added)).isFalse();
+		assertThat(contains(holder, removed)).isTrue();
+		assertThat(holder.update(model -> model.getGraph().add(triple("s8", "name", "Networks"))).size()).isEqualTo(1);
+
+		ModelHolder restarted = new ModelHolder(path, 0, Long.MAX_VALUE);
+		assertThat(contains(restarted, added)).isFalse();
+		assertThat(contains(restarted, removed)).isTrue();
+	}
+
+	@Test
+	void startupReadsTheSnapshot() throws IOException {
+		String path = Ontologies.copy(dir).toString();
+		File snapshot = new File(path + SnapshotFormat.THRIFT.getExtension());
+		new ModelHolder(path, 0, Long.MAX_VALUE, SnapshotFormat.THRIFT, true).getModel();
+		assertThat(snapshot).exists();
+
+		// A triple only the snapshot holds tells which one was read
+		Triple marker = triple("s9", "name", "Snapshot only");
+		Model model = ModelFactory.createDefaultModel();
+		RDFDataMgr.read(model, path);
+		model.getGraph().add(marker);
+		try (OutputStream out = new FileOutputStream(snapshot)) {
+			RDFDataMgr.write(out, model, Lang.RDFTHRIFT);
+		}
+
+		assertThat(contains(new ModelHolder(path, 0, Long.MAX_VALUE, SnapshotFormat.THRIFT, true), marker)).isTrue();
+
+		// The file is read again once it is newer than the snapshot
+		assertThat(new File(path).setLastModified(snapshot.lastModified() + 2000)).isTrue();
+		assertThat(contains(new ModelHolder(path, 0, Long.MAX_VALUE, SnapshotFormat.THRIFT, true), marker)).isFalse();
+	}
+
+	private static boolean contains(ModelStore store, Triple triple) {
+		return store.read(model -> model.getGraph().contains(triple));
+	}
+}
@@ -0,0 +1,64 @@
+package vn.lanhoang.ontology.storage;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.fixture.Benchmarks;
+import vn.lanhoang.ontology.fixture.Ontologies;
+
+/**
+ * Startup time and file size of RDF/XML against the binary snapshots, on
+ * {@code -Dbenchmark.triples} generated triples (1M by default)
+ */
+@EnabledIfSystemProperty(named = Benchmarks.PROPERTY, matches = "true")
+class SnapshotBenchmark {
+
+	private static final int TRIPLES_PER_SUBJECT = 4;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void loadTimeAndSize() throws IOException {
+		int triples = Integer.getInteger("benchmark.triples", 1_000_000);
+		String path = dir.resolve("generated.owl").toString();
+		Model model = ModelFactory.createDefaultModel();
+		for (int i = 0; i < triples / TRIPLES_PER_SUBJECT; i++) {
+			Benchmarks.addSubject(model, Ontologies.BASE_URI, i);
+		}
+		try (OutputStream out = new FileOutputStream(path)) {
+			RDFDataMgr.write(out, model, Lang.RDFXML);
+		}
+		model = null;
+
+		System.out.printf("%d triples%n", triples);
+		load(path, SnapshotFormat.NONE);
+		for (SnapshotFormat format : new SnapshotFormat[] { SnapshotFormat.THRIFT, SnapshotFormat.THRIFT_GZIP }) {
+			// The first start parses the file and writes the snapshot, the second reads it
+			new ModelHolder(path, 0, Long.MAX_VALUE, format, true).getModel();
+			load(path, format);
+		}
+	}
+
+	private static void load(String path, SnapshotFormat format) {
+		System.gc();
+		long start = System.nanoTime();
+		long size = new ModelHolder(path, 0, Long.MAX_VALUE, format, true).read(Model::size);
+		long millis = (System.nanoTime() - start) / 1_000_000;
+
+		File file = new File(format == SnapshotFormat.NONE ? path : path + format.getExtension());
+		System.out.printf("%-12s %8d ms %10.1f MB (%d triples)%n", format == SnapshotFormat.NONE ? "RDF/XML" : format,
+				millis, file.length() / (1024.0 * 1024), size);
+	}
+}
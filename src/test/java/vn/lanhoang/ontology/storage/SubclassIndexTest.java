@@ -0,0 +1,73 @@
+package vn.lanhoang.ontology.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+class SubclassIndexTest {
+
+	private static final String NS = "http://test.org/onto#";
+
+	@Test
+	void closureIncludesIndirectSubclasses() {
+		Model model = ModelFactory.createDefaultModel();
+		model.add(model.createResource(NS + "B"), RDFS.subClassOf, model.createResource(NS + "A"));
+		model.add(model.createResource(NS + "C"), RDFS.subClassOf, model.createResource(NS + "B"));
+		SubclassIndex index = new SubclassIndex(model);
+
+		assertThat(index.closure(node("A"))).containsExactly(node("A"), node("B"), node("C"));
+	}
+
+	@Test
+	void changesDropCachedClosures() {
+		Model model = ModelFactory.createDefaultModel();
+		SubclassIndex index = new SubclassIndex(model);
+		model.register(index);
+		Resource a = model.createResource(NS + "A");
+		assertThat(index.closure(node("A"))).containsExactly(node("A"));
+
+		model.add(model.createResource(NS + "B"), RDFS.subClassOf, a);
+		assertThat(index.closure(node("A"))).containsExactly(node("A"), node("B"));
+		assertThat(index.getVersion()).isEqualTo(1);
+
+		model.remove(model.createResource(NS + "B"), RDFS.subClassOf, a);
+		assertThat(index.closure(node("A"))).containsExactly(node("A"));
+	}
+
+	@Test
+	void concurrentReadsNeverKeepAStaleClosure() throws InterruptedException {
+		Model model = ModelFactory.createDefaultModel();
+		SubclassIndex index = new SubclassIndex(model);
+		model.register(index);
+		Resource a = model.createResource(NS + "A");
+		Resource b = model.createResource(NS + "B");
+
+		Thread reader = new Thread(() -> {
+			while (!Thread.currentThread().isInterrupted()) {
+				index.closure(node("A"));
+			}
+		});
+		reader.start();
+		try {
+			for (int i = 0; i < 2000; i++) {
+				model.add(b, RDFS.subClassOf, a);
+				model.remove(b, RDFS.subClassOf, a);
+			}
+		} finally {
+			reader.interrupt();
+			reader.join();
+		}
+
+		assertThat(index.closure(node("A"))).containsExactly(node("A"));
+	}
+
+	private static Node node(String name) {
+		return NodeFactory.createURI(NS + name);
+	}
+}
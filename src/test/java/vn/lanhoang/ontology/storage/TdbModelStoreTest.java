@@ -0,0 +1,103 @@
+package vn.lanhoang.ontology.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import vn.lanhoang.ontology.fixture.Ontologies;
+
+class TdbModelStoreTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void fileIsImportedOnlyWhileTheDatabaseIsEmpty() {
+		String path = Ontologies.copy(dir).toString();
+		String location = dir.resolve("tdb").toString();
+
+		TdbModelStore store = new TdbModelStore(location, path);
+		long size = store.read(model -> model.size());
+		store.update(model -> model.removeAll(model.getResource(Ontologies.BASE_URI + "s0"), null, null));
+		store.close();
+
+		store = new TdbModelStore(location, path);
+		try {
+			long reopened = store.read(model -> model.size());
+			boolean removed = store.read(model -> !model.containsResource(model.getResource(Ontologies.BASE_URI + "s0")));
+			assertThat(reopened).isLessThan(size);
+			assertThat(removed).isTrue();
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	void failedWriteIsRolledBack() {
+		String path = Ontologies.copy(dir).toString();
+		TdbModelStore store = new TdbModelStore(dir.resolve("tdb").toString(), path);
+		try {
+			Resource s9 = ResourceFactory.createResource(Ontologies.BASE_URI + "s9");
+			Resource s0 = ResourceFactory.createResource(Ontologies.BASE_URI + "s0");
+			try {
+				store.update(model -> {
+					model.add(s9, RDF.type, model.getResource(Ontologies.BASE_URI + "Subject"));
+					model.removeAll(s0, null, null);
+					throw new IllegalStateException("failed");
+				});
+			} catch (IllegalStateException e) {
+				// expected
+			}
+
+			boolean added = store.read(model -> model.containsResource(s9));
+			boolean removed = !store.read(model -> model.containsResource(s0));
+			assertThat(added).isFalse();
+			assertThat(removed).isFalse();
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	void concurrentFirstReadsSeeTheImportedStore() throws Exception {
+		String path = Ontologies.copy(dir).toString();
+		TdbModelStore store = new TdbModelStore(dir.resolve("tdb").toString(), path);
+		int threads = 8;
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				results.add(pool.submit(() -> {
+					start.await();
+					boolean indexed = store.getSubclassIndex().closure(NodeFactory.createURI(Ontologies.BASE_URI + "Subject"))
+							.contains(NodeFactory.createURI(Ontologies.BASE_URI + "Elective"));
+					return indexed && store.read(model -> {
+						Resource elective = model.getResource(Ontologies.BASE_URI + "e0");
+						return model.contains(elective, RDF.type);
+					});
+				}));
+			}
+			start.countDown();
+			for (Future<Boolean> result : results) {
+				assertThat(result.get()).isTrue();
+			}
+		} finally {
+			pool.shutdownNow();
+			store.close();
+		}
+	}
+}